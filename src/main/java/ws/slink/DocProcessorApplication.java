@@ -4,11 +4,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Configuration;
 import ws.slink.config.AppConfig;
 
+import java.util.Arrays;
+
 @Slf4j
 @Configuration
 @SpringBootApplication
@@ -17,7 +23,19 @@ import ws.slink.config.AppConfig;
 public class DocProcessorApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(DocProcessorApplication.class, args);
+		SpringApplication application = new SpringApplication(DocProcessorApplication.class);
+		// web server is needed in daemon mode only ('--daemon' argument or 'a2c.daemon' property from any
+		// configuration source), which is known as soon as environment is prepared (before context creation)
+		application.addListeners(new ApplicationListener<ApplicationEnvironmentPreparedEvent>() {
+			@Override
+			public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+				boolean daemon = Arrays.asList(args).contains("--daemon")
+					|| Binder.get(event.getEnvironment()).bind("a2c.daemon", Boolean.class).orElse(false);
+				if (!daemon)
+					event.getSpringApplication().setWebApplicationType(WebApplicationType.NONE);
+			}
+		});
+		application.run(args);
 	}
 
 }
@@ -12,6 +12,8 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.stereotype.Component;
 import ws.slink.config.AppConfig;
+import ws.slink.parser.AsciidoctorPool;
+import ws.slink.parser.DirectoryWatcher;
 import ws.slink.parser.Processor;
 
 @Slf4j
@@ -21,6 +23,8 @@ public class DocProcessorApplicationRunner implements CommandLineRunner, Applica
 
     private final @NonNull AppConfig appConfig;
     private final @NonNull Processor processor;
+    private final @NonNull AsciidoctorPool asciidoctorPool;
+    private final @NonNull DirectoryWatcher directoryWatcher;
 
     private ConfigurableApplicationContext applicationContext;
 
@@ -34,9 +38,24 @@ public class DocProcessorApplicationRunner implements CommandLineRunner, Applica
 
         int exitCode = 0;
 
-        if (!checkConfiguration()) {
+        if (appConfig.isDaemon()) {
+            if (StringUtils.isNotBlank(appConfig.getDaemonToken())) {
+                // keep running and serve jobs over HTTP
+                asciidoctorPool.warmUp();
+                log.info("daemon mode: serving conversion/publishing jobs from {}", appConfig.getDaemonRoot());
+                return;
+            }
+            log.error("daemon mode: job API token is not set (use --daemon-token or A2C_DAEMON_TOKEN environment variable)");
             printUsage();
             exitCode = 1;
+        } else if (!checkConfiguration()) {
+            printUsage();
+            exitCode = 1;
+        } else if (appConfig.isWatch()) {
+            // keep engines warm and process changes until interrupted
+            asciidoctorPool.warmUp();
+            System.out.println(processor.process());
+            directoryWatcher.watch(appConfig.getDir(), appConfig.getSpace());
         } else {
             System.out.println(processor.process());
         }
@@ -51,6 +70,7 @@ public class DocProcessorApplicationRunner implements CommandLineRunner, Applica
         || StringUtils.isNotBlank(appConfig.getUser()) && (StringUtils.isBlank(appConfig.getUrl()) || StringUtils.isBlank(appConfig.getPass()))
         || StringUtils.isNotBlank(appConfig.getPass()) && (StringUtils.isBlank(appConfig.getUser()) || StringUtils.isBlank(appConfig.getUrl()))
         || (appConfig.getClean().isEmpty() && StringUtils.isBlank(appConfig.getInput()) && StringUtils.isBlank(appConfig.getDir()))
+        || (appConfig.isWatch() && StringUtils.isBlank(appConfig.getDir()))
         )
         ;
     }
@@ -67,6 +87,34 @@ public class DocProcessorApplicationRunner implements CommandLineRunner, Applica
         System.out.println("\t--user\t\tConfluence user with publish rights");
         System.out.println("\t--pass\t\tConfluence user password");
         System.out.println("\t--space\t\tConfluence space key override");
+        System.out.println("\t--convert-threads\tNumber of document conversion threads (defaults to number of available processors)");
+        System.out.println("\t--publish-threads\tNumber of document publishing threads (defaults to 4 x number of available processors)");
+        System.out.println("\t--daemon\tRun as resident process serving conversion/publishing jobs over HTTP (see server.port)");
+        System.out.println("\t--daemon-token\tToken to be passed by job API clients in 'Authorization: Bearer <token>' header (mandatory with --daemon)");
+        System.out.println("\t--daemon-root\tDirectory job input files and directories should reside in (defaults to working directory)");
+        System.out.println("\t--engines\tNumber of pooled asciidoctor engines (defaults to number of available processors)");
+        System.out.println("\t--backend\tConversion backend: confluence (default, native storage format converter) or xhtml5 (html conversion fixed up by postprocessors)");
+        System.out.println("\t--http-pool-size\tMaximum number of keep-alive connections to confluence server (defaults to 20)");
+        System.out.println("\t--http-connect-timeout\tConfluence server connect timeout in milliseconds (defaults to 10000)");
+        System.out.println("\t--http-read-timeout\tConfluence server response timeout in milliseconds (defaults to 60000)");
+        System.out.println("\t--http-max-in-flight\tMaximum number of concurrent requests to confluence server (defaults to http pool size)");
+        System.out.println("\t--no-adaptive-concurrency\tDo not adjust number of concurrent confluence server requests (use --http-max-in-flight)");
+        System.out.println("\t--http-latency-target\tResponse time (95th percentile, in milliseconds) to keep concurrency under (defaults to twice the lowest observed)");
+        System.out.println("\t--http-retries\tMaximum number of retries of failed confluence server request (defaults to 3, 0 disables retries)");
+        System.out.println("\t--http-retry-delay\tInitial retry delay in milliseconds, doubled with every retry (defaults to 500)");
+        System.out.println("\t--http-retry-max-delay\tMaximum retry delay in milliseconds (defaults to 30000)");
+        System.out.println("\t--http-retry-budget\tMaximum number of confluence server request retries per run (defaults to 100)");
+        System.out.println("\t--page-size\tNumber of pages requested at once when listing confluence space (defaults to 100)");
+        System.out.println("\t--cache-dir\tDirectory for cached data (defaults to ~/.cache/asciidoc2confluence)");
+        System.out.println("\t--no-manifest\tDo not use manifest of published pages (find pages by title only)");
+        System.out.println("\t--no-conversion-cache\tDo not use cache of converted documents");
+        System.out.println("\t--conversion-cache-size\tConversion cache size limit in megabytes (defaults to 256)");
+        System.out.println("\t--include-cache-size\tIncluded files in-memory cache size limit in megabytes (defaults to 64, 0 disables)");
+        System.out.println("\t--no-include-tracking\tLeave includes to asciidoctor (included files are not tracked)");
+        System.out.println("\t--incremental\tProcess only documents changed in git since last published revision");
+        System.out.println("\t--since\t\tProcess only documents changed in git since given revision");
+        System.out.println("\t--watch\t\tKeep watching directory (--dir) for changes and process changed documents");
+        System.out.println("\t--watch-debounce\tQuiet period in milliseconds before changed documents are processed (defaults to 300)");
         System.out.println("\nNote: if (--url & --user & --pass) not set, conversion output will be redirected to STDOUT");
         System.exit(1);
     }
@@ -0,0 +1,193 @@
+package ws.slink.atlassian;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ws.slink.config.AppConfig;
+import ws.slink.service.ProcessingExecutors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * adaptive (AIMD) limit of concurrent confluence server requests;
+ *
+ * requests are queued and dispatched to request executor while number of requests in flight is below current
+ * limit; limit is adjusted once per round (number of completed requests equal to current limit): it is increased
+ * (doubled until first decrease, then by one) if requests saturated the limit and 95th percentile of response times
+ * stayed below latency target (see a2c.http-latency-target, by default twice the lowest observed percentile), and
+ * decreased multiplicatively when server throttles requests (429, 503) or response times exceed the target;
+ * limit is kept between 1 and a2c.http-max-in-flight;
+ *
+ * with a2c.adaptive-concurrency disabled limit is fixed at a2c.http-max-in-flight
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ConcurrencyLimiter {
+
+    private static final int INITIAL_LIMIT = 4;
+    private static final double THROTTLE_DECREASE = 0.5;
+    private static final double LATENCY_DECREASE = 0.75;
+    // automatic latency target is not lower than this (ms), so that jitter of fast responses is not taken as a spike
+    private static final long MIN_LATENCY_TARGET = 100;
+
+    private final AppConfig appConfig;
+    private final ProcessingExecutors executors;
+
+    private final Deque<Request> queue = new ArrayDeque<>();
+    private final List<Long> latencies = new ArrayList<>();
+    private final List<Change> history = new ArrayList<>();
+    private int limit = 0;
+    private int inFlight = 0;
+    private int completed = 0;
+    private boolean saturated = false;
+    private boolean decreased = false;
+    private boolean slowStart = true;
+    private long lowestLatency = Long.MAX_VALUE;
+    private long started = System.currentTimeMillis();
+
+    /**
+     * confluence server request
+     */
+    public interface Request {
+        /**
+         * @return true if request was throttled by server
+         */
+        boolean run();
+    }
+
+    /**
+     * limit change
+     */
+    @Getter
+    @Accessors(fluent = true)
+    @RequiredArgsConstructor
+    public static class Change {
+        private final long time;       // milliseconds since start of run
+        private final int limit;
+        private final String reason;
+    }
+
+    /**
+     * queues request to be executed by request executor
+     */
+    public synchronized void submit(Request request) {
+        queue.add(request);
+        dispatch();
+    }
+
+    /**
+     * starts history of limit changes for a new run (current limit is kept)
+     */
+    public synchronized void reset() {
+        started = System.currentTimeMillis();
+        history.clear();
+        history.add(new Change(0, limit(), "start"));
+    }
+
+    public synchronized int limit() {
+        if (limit <= 0)
+            limit = adaptive() ? Math.min(INITIAL_LIMIT, maxLimit()) : maxLimit();
+        return limit;
+    }
+
+    /**
+     * @return limit changes since start of run
+     */
+    public synchronized List<Change> history() {
+        return Collections.unmodifiableList(new ArrayList<>(history));
+    }
+
+    private void dispatch() {
+        while (inFlight < limit() && !queue.isEmpty()) {
+            Request request = queue.poll();
+            inFlight++;
+            executors.request().execute(() -> {
+                long start = System.nanoTime();
+                boolean throttled = false;
+                try {
+                    throttled = request.run();
+                } finally {
+                    completed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), throttled);
+                }
+            });
+        }
+        if (inFlight >= limit())
+            saturated = true;
+    }
+
+    private synchronized void completed(long latency, boolean throttled) {
+        inFlight--;
+        if (adaptive()) {
+            if (throttled) {
+                // requests sent before decrease are still completing, so limit is decreased once per round
+                if (!decreased)
+                    decrease(THROTTLE_DECREASE, "throttled");
+            } else {
+                latencies.add(latency);
+            }
+            if (++completed >= limit())
+                adjust();
+        }
+        dispatch();
+    }
+
+    // end of round
+    private void adjust() {
+        if (!decreased && !latencies.isEmpty()) {
+            Collections.sort(latencies);
+            long p95 = latencies.get((int) Math.ceil(latencies.size() * 0.95) - 1);
+            lowestLatency = Math.min(lowestLatency, p95);
+            long target = (appConfig.getHttpLatencyTarget() > 0)
+                ? appConfig.getHttpLatencyTarget()
+                : Math.max(MIN_LATENCY_TARGET, 2 * lowestLatency);
+            if (p95 > target) {
+                log.debug("p95 latency {} ms exceeds target of {} ms", p95, target);
+                decrease(LATENCY_DECREASE, "latency");
+                return;
+            }
+            if (saturated && limit < maxLimit())
+                change(slowStart ? Math.min(maxLimit(), limit * 2) : limit + 1, "increase");
+        }
+        newRound(false);
+    }
+
+    private void decrease(double factor, String reason) {
+        slowStart = false;
+        change(Math.max(1, (int) (limit * factor)), reason);
+        newRound(true);
+    }
+
+    private void change(int newLimit, String reason) {
+        if (newLimit == limit)
+            return;
+        log.debug("concurrency limit {} -> {} ({})", limit, newLimit, reason);
+        limit = newLimit;
+        history.add(new Change(System.currentTimeMillis() - started, limit, reason));
+    }
+
+    private void newRound(boolean decreased) {
+        this.decreased = decreased;
+        completed = 0;
+        saturated = inFlight >= limit;
+        latencies.clear();
+    }
+
+    private int maxLimit() {
+        return Math.max(1, appConfig.getHttpMaxInFlight() > 0 ? appConfig.getHttpMaxInFlight() : appConfig.getHttpPoolSize());
+    }
+
+    private boolean adaptive() {
+        return appConfig.isAdaptiveConcurrency();
+    }
+
+}
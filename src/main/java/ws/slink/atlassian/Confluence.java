@@ -2,7 +2,6 @@ package ws.slink.atlassian;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -11,25 +10,42 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientException;
 import ws.slink.config.AppConfig;
 import ws.slink.model.Page;
+import ws.slink.service.ProcessingExecutors;
 import ws.slink.tools.FluentJson;
 
-import java.nio.charset.Charset;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
-
+/**
+ * confluence REST API client;
+ *
+ * '...Async' methods do not block calling thread: requests are queued to request executor, number of requests
+ * in flight is limited by {@link ConcurrencyLimiter}, returned futures are completed with request results;
+ * dependent requests (e.g. page lookup and update) are chained without waiting; blocking methods wait for
+ * their asynchronous counterparts; failed requests are retried according to {@link RetryPolicy}
+ *
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor (onConstructor = @__(@Autowired))
 public class Confluence {
 
+    // page property to store content hash in
+    public static final String HASH_PROPERTY = "asciidoc2confluence-hash";
+
+    // number of space listing windows requested concurrently when total number of pages is not known
+    private static final int LISTING_WINDOWS = 4;
+
     @Value("${confluence.protected.label:}")
     private List<String> protectedLabels;
 
@@ -37,11 +53,17 @@ public class Confluence {
     private String urlsVersions;
 
     private final AppConfig appConfig;
+    private final ConfluenceConnector connector;
+    private final ProcessingExecutors executors;
+    private final RetryPolicy retryPolicy;
+    private final ConcurrencyLimiter concurrencyLimiter;
 
     public Optional<String> getPageId(String space, String title) {
-        String url = String.format("%s/rest/api/content?title=%s&spaceKey=%s&expand=history", baseUrl(), title, space);
-        AtomicReference<Optional<String>> result = new AtomicReference<>(Optional.empty());
-        exchange(
+        return await(getPageIdAsync(space, title));
+    }
+    public CompletableFuture<Optional<String>> getPageIdAsync(String space, String title) {
+        String url = String.format("%s/rest/api/content?title=%s&spaceKey=%s", baseUrl(), title, space);
+        return exchangeAsync(
             url,
             HttpMethod.GET,
             prepare(null),
@@ -53,56 +75,58 @@ public class Confluence {
                 .append("'")
                 .toString()
             )
-            .ifPresent(response -> {
+            .thenApply(response -> response.flatMap(r -> {
                 try {
-                    result.set(
-                        Optional.of(
-                            new FluentJson(response.getBody())
+                    return Optional.of(
+                        new FluentJson(r.getBody())
                             .get("results")
                             .get(0)
                             .getString("id")
                             .replaceAll("\"", "")
-                        )
                     );
                 } catch (IndexOutOfBoundsException e) {
                     log.trace("page '{}' not found in '{}'", title, space);
+                    return Optional.empty();
                 }
-            }
+            })
         );
-        return result.get();
     }
 
     public Optional<Page> getPage(String space, String title) {
-        Optional<String> pageId = getPageId(space, title);
-        if (pageId.isPresent()) {
-            log.trace("trying to get page '{}' from '{}'", title, space);
-            return getPage(pageId.get());
-        } else {
-            log.trace("no page '{}' exists in '{}'", title, space);
-            return Optional.empty();
-        }
+        return await(getPageAsync(space, title));
+    }
+    public CompletableFuture<Optional<Page>> getPageAsync(String space, String title) {
+        return getPageIdAsync(space, title).thenCompose(pageId -> {
+            if (pageId.isPresent()) {
+                log.trace("trying to get page '{}' from '{}'", title, space);
+                return getPageAsync(pageId.get());
+            } else {
+                log.trace("no page '{}' exists in '{}'", title, space);
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+        });
     }
     public Optional<Page> getPage(String pageId) {
+        return await(getPageAsync(pageId));
+    }
+    public CompletableFuture<Optional<Page>> getPageAsync(String pageId) {
         log.trace("trying to get page #{}", pageId);
-        String url = String.format("%s/rest/api/content/%s?expand=metadata.labels,version", baseUrl(), pageId);
-        AtomicReference<Optional<Page>> result = new AtomicReference<>(Optional.empty());
-        exchange(
+        String url = String.format("%s/rest/api/content/%s?expand=metadata.labels,version,metadata.properties.%s", baseUrl(), pageId, HASH_PROPERTY);
+        return exchangeAsync(
             url
             ,HttpMethod.GET
             ,prepare(null)
             ,new StringBuilder().append("requesting page #").append(pageId).toString()
-        ).ifPresent(response -> {
-//            log.trace("response: {}", response.getBody());
-            try {
-                result.set(parsePageJson(response.getBody()));
-            } catch (Exception e) {
-                log.warn("could not convert response json");
-            }
-        });
-        return result.get();
+        ).thenApply(response -> response.flatMap(r -> parsePageJson(r.getBody())));
     }
 
     public int deletePage(String pageId, String title) {
+        return await(deletePageAsync(pageId, title));
+    }
+    /**
+     * @return completes with number of removed pages (1 or 0)
+     */
+    public CompletableFuture<Integer> deletePageAsync(String pageId, String title) {
         String url = String.format("%s/rest/api/content/%s", baseUrl(), pageId);
         String errorMessage = new StringBuilder()
             .append("removing page #")
@@ -111,15 +135,28 @@ public class Confluence {
             .append(title)
             .append(")")
             .toString();
-        AtomicInteger r1 = new AtomicInteger(0);
-        exchange(url, HttpMethod.DELETE, prepare(null), errorMessage).ifPresent(re -> {
-            if (!re.getStatusCode().isError())
-                r1.set(1);
-        });
-        exchange(url.concat("?status=trashed"), HttpMethod.DELETE, prepare(null), errorMessage);
-        return r1.get();
+        return exchangeAsync(url, HttpMethod.DELETE, prepare(null), errorMessage)
+            .thenCompose(response -> exchangeAsync(url.concat("?status=trashed"), HttpMethod.DELETE, prepare(null), errorMessage)
+                .thenApply(trashed -> response.filter(re -> !re.getStatusCode().isError()).isPresent() ? 1 : 0));
     }
     public boolean publishPage(String space, String title, String parent, String status, String content) {
+        return await(publishPageAsync(space, title, parent, status, content));
+    }
+    public CompletableFuture<Boolean> publishPageAsync(String space, String title, String parent, String status, String content) {
+        CompletableFuture<Optional<String>> parentId = StringUtils.isNotBlank(parent)
+            ? getPageIdAsync(space, parent)
+            : CompletableFuture.completedFuture(Optional.empty());
+        return parentId
+            .thenCompose(id -> createPageAsync(space, title, id.orElse(null), status, content))
+            .thenApply(Optional::isPresent);
+    }
+    /**
+     * @return id of created page
+     */
+    public Optional<String> createPage(String space, String title, String parentId, String status, String content) {
+        return await(createPageAsync(space, title, parentId, status, content));
+    }
+    public CompletableFuture<Optional<String>> createPageAsync(String space, String title, String parentId, String status, String content) {
         String url = String.format("%s/rest/api/content", baseUrl());
         FluentJson fj = new FluentJson()
             .set("status", status)
@@ -133,104 +170,144 @@ public class Confluence {
                  )
             );
 
-        if (StringUtils.isNotBlank(parent))
-            getPageId(space, parent).ifPresent(parentId -> {
-                List<JSONObject> list = new ArrayList<>();
-                list.add((JSONObject) new FluentJson().set("id", Long.valueOf(parentId)).get());
-                fj.set("ancestors", list);
-            });
+        if (StringUtils.isNotBlank(parentId)) {
+            List<JSONObject> list = new ArrayList<>();
+            list.add((JSONObject) new FluentJson().set("id", Long.valueOf(parentId)).get());
+            fj.set("ancestors", list);
+        }
 
         log.trace("DATA: {}", fj.toString());
 
-        return exchange(
+        return exchangeAsync(
              url
             ,HttpMethod.POST
             ,prepare(fj.toString())
             ,new StringBuilder().append("publishing page #").append(title).toString()
-        ).isPresent();
+        ).thenApply(response -> response
+            .map(r -> new FluentJson(r.getBody()).get("id"))
+            .map(id -> id.get().toString()));
     }
     public boolean updatePage(String pageId, String newTitle, String newStatus, String newContent) {
-        AtomicBoolean result = new AtomicBoolean(false);
-        getCurrentVersion(pageId).ifPresent(version -> {
-            if (version > 0) {
-                log.trace("trying to update page #{}", pageId);
-                String url = String.format("%s/rest/api/content/%s", baseUrl(), pageId);
-                FluentJson fj = new FluentJson()
-                    .set("status", newStatus)
-                    .set("version", new FluentJson().set("number", version + 1))
-                    .set("type", "page")
-                    .set("title", newTitle)
-                    .set("body", new FluentJson()
-                        .set("storage", new FluentJson()
-                            .set("value", newContent)
-                            .set("representation", "storage")
-                        )
-                    );
-                log.trace("DATA: {}", fj.toString());
-                result.set(
-                    exchange(
-                        url
-                        ,HttpMethod.PUT
-                        ,prepare(fj.toString())
-                        ,new StringBuilder().append("updating page #").append(newTitle).toString()
-                    ).isPresent());
-                removeVersion(pageId, version);
-        }});
-        return result.get();
+        return await(updatePageAsync(pageId, newTitle, newStatus, newContent));
+    }
+    public CompletableFuture<Boolean> updatePageAsync(String pageId, String newTitle, String newStatus, String newContent) {
+        return getCurrentVersionAsync(pageId).thenCompose(version -> version.isPresent()
+            ? updatePageAsync(pageId, version.get(), newTitle, newStatus, newContent).thenApply(Optional::isPresent)
+            : CompletableFuture.completedFuture(false));
+    }
+    /**
+     * updates page with already known current version; previous version is removed from page history,
+     * confluence renumbers following versions, so updated page keeps its version number if removal succeeds
+     *
+     * @return page version after update or empty, if page could not be updated
+     */
+    public Optional<Integer> updatePage(String pageId, int version, String newTitle, String newStatus, String newContent) {
+        return await(updatePageAsync(pageId, version, newTitle, newStatus, newContent));
+    }
+    public CompletableFuture<Optional<Integer>> updatePageAsync(String pageId, int version, String newTitle, String newStatus, String newContent) {
+        if (version <= 0)
+            return CompletableFuture.completedFuture(Optional.empty());
+        log.trace("trying to update page #{}", pageId);
+        String url = String.format("%s/rest/api/content/%s", baseUrl(), pageId);
+        FluentJson fj = new FluentJson()
+            .set("status", newStatus)
+            .set("version", new FluentJson().set("number", version + 1))
+            .set("type", "page")
+            .set("title", newTitle)
+            .set("body", new FluentJson()
+                .set("storage", new FluentJson()
+                    .set("value", newContent)
+                    .set("representation", "storage")
+                )
+            );
+        log.trace("DATA: {}", fj.toString());
+        return exchangeAsync(
+                url
+                ,HttpMethod.PUT
+                ,prepare(fj.toString())
+                ,new StringBuilder().append("updating page #").append(newTitle).toString()
+            ).thenCompose(response -> response.isPresent()
+                ? removeVersionAsync(pageId, version).thenApply(removed -> Optional.of(removed ? version : version + 1))
+                : CompletableFuture.completedFuture(Optional.<Integer>empty()));
     }
 
     public Optional<Integer> getCurrentVersion(String pageId) {
-        AtomicReference<Optional<Integer>> result = new AtomicReference<>();
-        result.set(Optional.empty());
-        getPage(pageId).ifPresent(existingPage -> {
-            try {
-                log.debug("existing page: ", existingPage);
-                result.set(Optional.of(existingPage.version()));
-            } catch (Exception e) {
+        return await(getCurrentVersionAsync(pageId));
+    }
+    public CompletableFuture<Optional<Integer>> getCurrentVersionAsync(String pageId) {
+        return getPageAsync(pageId).thenApply(existingPage -> {
+            if (!existingPage.isPresent())
                 log.debug("could not get current document version for page #{}", pageId);
-            }
+            return existingPage.map(Page::version);
         });
-        return result.get();
     }
     public boolean removeVersion(String pageId, int versionNumber) {
-        AtomicBoolean result = new AtomicBoolean(false);
+        return await(removeVersionAsync(pageId, versionNumber));
+    }
+    public CompletableFuture<Boolean> removeVersionAsync(String pageId, int versionNumber) {
         log.trace("trying to remove page #{} v.{}", pageId, versionNumber);
         // DELETE /{api|experimental}/content/<id>/version/<number> / ?
         String url = String.format("%s/rest/%s/content/%s/version/%d", baseUrl(), urlsVersions, pageId, versionNumber);
-        result.set(
-            exchange(
+        return exchangeAsync(
                 url
                 ,HttpMethod.DELETE
                 ,prepare(null)
                 ,new StringBuilder().append("removing version " + versionNumber + " of page #").append(pageId).toString()
-            ).isPresent());
-        return false;
+            ).thenApply(Optional::isPresent);
     }
 
-    public boolean tagPage(String space, String title, List<String> tags) {
-        Optional<String> pageId = getPageId(space, title);
-        if(pageId.isPresent()) {
-            return tagPage(pageId.get(), tags);
+    /**
+     * stores content hash in page property together with page version it is stored for, so that pages
+     * edited on server after last update are not considered unchanged
+     *
+     * @param pageVersion current page version
+     * @param propertyVersion current property version (0 if property does not exist)
+     */
+    public boolean setContentHash(String pageId, int pageVersion, String hash, int propertyVersion) {
+        return await(setContentHashAsync(pageId, pageVersion, hash, propertyVersion));
+    }
+    public CompletableFuture<Boolean> setContentHashAsync(String pageId, int pageVersion, String hash, int propertyVersion) {
+        FluentJson fj = new FluentJson()
+            .set("key", HASH_PROPERTY)
+            .set("value", new FluentJson()
+                .set("hash", hash)
+                .set("version", pageVersion)
+            );
+        String message = new StringBuilder().append("storing content hash for page #").append(pageId).toString();
+        if (propertyVersion > 0) {
+            fj.set("version", new FluentJson().set("number", propertyVersion + 1));
+            String url = String.format("%s/rest/api/content/%s/property/%s", baseUrl(), pageId, HASH_PROPERTY);
+            return exchangeAsync(url, HttpMethod.PUT, prepare(fj.toString()), message).thenApply(Optional::isPresent);
         } else {
-            return false;
+            String url = String.format("%s/rest/api/content/%s/property", baseUrl(), pageId);
+            return exchangeAsync(url, HttpMethod.POST, prepare(fj.toString()), message).thenApply(Optional::isPresent);
         }
     }
+
+    public boolean tagPage(String space, String title, List<String> tags) {
+        return await(getPageIdAsync(space, title).thenCompose(pageId -> pageId.isPresent()
+            ? tagPageAsync(pageId.get(), tags)
+            : CompletableFuture.completedFuture(false)));
+    }
     public boolean tagPage(String pageId, List<String> tags) {
+        return await(tagPageAsync(pageId, tags));
+    }
+    public CompletableFuture<Boolean> tagPageAsync(String pageId, List<String> tags) {
         if (tags.size() > 0) {
             String url = String.format("%s/rest/api/content/%s/label", baseUrl(), pageId);
             JSONArray labels = new JSONArray();
             tags.stream()
                     .map(tag -> (JSONObject) new FluentJson().set("name", tag.replaceAll(" ", "_")).set("prefix", "global").get())
                     .forEach(labels::add);
-            return exchange(
+            return exchangeAsync(
                     url,
                     HttpMethod.POST,
                     prepare(labels.toString()),
                     new StringBuilder().append("tagging page #").append(pageId).toString()
-            ).isPresent();
+            ).thenApply(Optional::isPresent);
         } else {
             log.trace("no need to tag page #{} - no tags set for document", pageId);
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
     }
     public Collection<String> getTags(String space, String title) {
@@ -244,58 +321,63 @@ public class Confluence {
     public Collection<String> getTags(String pageId) {
         log.trace("trying to get tags for page #{}", pageId);
         String url = String.format("%s/rest/api/content/%s/label", baseUrl(), pageId);
-        AtomicReference<List<String>> result = new AtomicReference<>(new ArrayList<>());
-        exchange(
+        return await(exchangeAsync(
             url
             ,HttpMethod.GET
             ,prepare(null)
             ,new StringBuilder().append("requesting tags for page #").append(pageId).toString()
-        ).ifPresent(response -> {
+        ).thenApply(response -> response.map(r -> {
             try {
-                result.set(new FluentJson(response.getBody()).get("results")
+                return new FluentJson(r.getBody()).get("results")
                     .stream()
                     .map(v -> v.getString("name").replaceAll("\"", ""))
-                    .collect(Collectors.toList()));
+                    .collect(Collectors.<String>toList());
             } catch (Exception e) {
                 log.warn("could not get tag list for page #{}", pageId);
+                return new ArrayList<String>();
             }
-        });
-        return result.get();
+        }).orElseGet(ArrayList::new)));
     }
     public boolean removeTags(String pageId, Collection<String> tags) {
         if (tags.size() > 0) {
-            AtomicBoolean result = new AtomicBoolean(true);
-            tags.stream().forEach(tag -> {
-                String url = String.format("%s/rest/api/content/%s/label?name=%s", baseUrl(), pageId, tag);
-                result.set(result.get() & exchange(
-                    url,
-                    HttpMethod.DELETE,
-                    prepare(null),
-                    new StringBuilder()
-                        .append("removing tag '")
-                        .append(tag)
-                        .append("' for page #")
-                        .append(pageId).toString()).isPresent());
-            });
-            return result.get();
+            List<CompletableFuture<Boolean>> results = tags.stream()
+                .map(tag -> removeTagAsync(pageId, tag))
+                .collect(Collectors.toList());
+            return results.stream().map(this::await).reduce(true, (a, b) -> a & b);
         } else {
             log.trace("no tags set to be removed");
             return false;
         }
     }
+    public boolean removeTag(String pageId, String tag) {
+        return await(removeTagAsync(pageId, tag));
+    }
+    public CompletableFuture<Boolean> removeTagAsync(String pageId, String tag) {
+        String url = String.format("%s/rest/api/content/%s/label?name=%s", baseUrl(), pageId, tag);
+        return exchangeAsync(
+            url,
+            HttpMethod.DELETE,
+            prepare(null),
+            new StringBuilder()
+                .append("removing tag '")
+                .append(tag)
+                .append("' for page #")
+                .append(pageId).toString()).thenApply(Optional::isPresent);
+    }
 
     public int cleanSpace(String space) {
         AtomicInteger result = new AtomicInteger(0);
+        List<Page> pages = getPages(space);
         if (appConfig.isForce()) {
-            getPages(space)
+            pages
                 .stream()
                 .forEach(p -> result.addAndGet(deletePage(p.id(), p.title())));
         } else {
-            getPages(space)
+            pages
                 .stream()
                 .filter(p -> p.labels().stream().anyMatch(protectedLabels::contains))
                 .forEach(p -> log.info("Skipping removal of '" + p.title() + "' (" + p.id() + ")"));
-            getPages(space)
+            pages
                 .stream()
                 .filter(p -> p.labels().stream().noneMatch(protectedLabels::contains))
                 .forEach(p -> result.addAndGet(deletePage(p.id(), p.title())));
@@ -303,26 +385,81 @@ public class Confluence {
         return result.get();
     }
     public List<Page> getPages(String space) {
-        int index = 0;
-        int limit = 25;
-        List<Page> result = new ArrayList<>(limit * 2);
-        while(true) {
-            List<Page> batch = getPages(space, index, limit);
-            if (batch.isEmpty())
-                break;
-            result.addAll(batch);
-            index += limit;
-        }
-        return result;
+        return await(getPagesAsync(space));
+    }
+    /**
+     * @return completes with pages of space (only pages listed before first error, if any)
+     */
+    public CompletableFuture<List<Page>> getPagesAsync(String space) {
+        return listAsync(space).thenApply(listing -> listing.pages);
+    }
+    /**
+     * @return all the pages of space or empty, if space could not be listed completely
+     */
+    public Optional<List<Page>> listPages(String space) {
+        return await(listPagesAsync(space));
+    }
+    public CompletableFuture<Optional<List<Page>>> listPagesAsync(String space) {
+        return listAsync(space).thenApply(listing -> listing.complete ? Optional.of(listing.pages) : Optional.empty());
+    }
+    // first window is requested alone (small spaces need a single request, server reports actual window size),
+    // following windows are requested concurrently: all at once if total number of pages is reported by server,
+    // in groups of LISTING_WINDOWS otherwise (windows past the end of listing are empty and ignored)
+    private CompletableFuture<Listing> listAsync(String space) {
+        long started = System.currentTimeMillis();
+        return getPagesAsync(space, 0, Math.max(1, appConfig.getPageSize())).thenCompose(first -> {
+            Listing listing = new Listing();
+            listing.requests = 1;
+            if (!first.isPresent()) {
+                listing.complete = false;
+                return CompletableFuture.completedFuture(listing);
+            }
+            listing.pages.addAll(first.get().pages);
+            listing.limit = first.get().limit;
+            listing.total = first.get().total;
+            listing.last = first.get().last;
+            return listWindows(space, listing, listing.pages.size());
+        }).thenApply(listing -> {
+            log.debug("listed {} page(s) of space {} with {} request(s) in {} ms",
+                listing.pages.size(), space, listing.requests, System.currentTimeMillis() - started);
+            return listing;
+        });
     }
-    private List<Page> getPages(String space, int start, int limit) {
-        String url = String.format("%s/rest/api/content?type=page&spaceKey=%s&expand=metadata.labels,version&start=%d&limit=%d",
+    private CompletableFuture<Listing> listWindows(String space, Listing listing, int start) {
+        if (listing.last)
+            return CompletableFuture.completedFuture(listing);
+        int windows = (listing.total > start)
+            ? (listing.total - start + listing.limit - 1) / listing.limit
+            : LISTING_WINDOWS;
+        List<CompletableFuture<Optional<Batch>>> batches = new ArrayList<>(windows);
+        for (int i = 0; i < windows; i++)
+            batches.add(getPagesAsync(space, start + i * listing.limit, listing.limit));
+        listing.requests += windows;
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).thenCompose(done -> {
+            for (CompletableFuture<Optional<Batch>> future : batches) {
+                Optional<Batch> batch = future.join();
+                if (listing.last)
+                    continue;
+                if (!batch.isPresent()) {
+                    listing.complete = false;
+                    listing.last = true;
+                } else {
+                    listing.pages.addAll(batch.get().pages);
+                    listing.last = batch.get().last;
+                }
+            }
+            return listWindows(space, listing, start + windows * listing.limit);
+        });
+    }
+    // labels, version and content hash are the only expanded fields (see parsePageJson)
+    private CompletableFuture<Optional<Batch>> getPagesAsync(String space, int start, int limit) {
+        String url = String.format("%s/rest/api/content?type=page&spaceKey=%s&expand=metadata.labels,version,metadata.properties.%s&start=%d&limit=%d",
                                    baseUrl(),
                                    space,
+                                   HASH_PROPERTY,
                                    start,
                                    limit);
-        List<Page> result = new ArrayList<>();
-        exchange(
+        return exchangeAsync(
             url,
             HttpMethod.GET,
             prepare(null),
@@ -331,16 +468,43 @@ public class Confluence {
                 .append(space)
                 .toString()
         )
-        .ifPresent(response -> {
-            FluentJson fj = new FluentJson(response.getBody());
-            fj.get("results")
+        .thenApply(response -> response.map(r -> {
+            FluentJson fj = new FluentJson(r.getBody());
+            Batch batch = new Batch();
+            batch.pages = fj.get("results")
                   .stream()
                   .map(pageJson -> parsePageJson(pageJson))
                   .filter(pageOpt -> pageOpt.isPresent())
                   .map(pageOpt -> pageOpt.get())
-                  .forEach(result::add);
-        });
-        return result;
+                  .collect(Collectors.toList());
+            int size = (null == fj.get("size")) ? batch.pages.size() : fj.getInt("size");
+            // server limits window size to its own maximum
+            batch.limit = (null == fj.get("limit") || fj.getInt("limit") <= 0) ? limit : fj.getInt("limit");
+            batch.total = (null == fj.get("totalSize")) ? -1 : fj.getInt("totalSize");
+            // server can return short windows before end of listing (e.g. pages filtered out by permissions),
+            // so 'next' link is the only end marker if links are reported; total and window sizes are fallbacks
+            if (null != fj.get("_links"))
+                batch.last = null == fj.get("_links").get("next");
+            else if (batch.total >= 0)
+                batch.last = start + size >= batch.total;
+            else
+                batch.last = size < batch.limit;
+            return batch;
+        }));
+    }
+    private static class Batch {
+        private List<Page> pages;
+        private int limit;
+        private int total;
+        private boolean last;
+    }
+    private static class Listing {
+        private final List<Page> pages = new ArrayList<>();
+        private int limit;
+        private int total;
+        private int requests;
+        private boolean complete = true;
+        private boolean last;
     }
 
     public boolean canPublish() {
@@ -352,33 +516,92 @@ public class Confluence {
 
     private HttpEntity<String> prepare(String data) {
         HttpHeaders headers = new HttpHeaders();
-        String auth = user() + ":" + password();
-        byte[] encodedAuth = Base64.encodeBase64(auth.getBytes(Charset.forName("US-ASCII")));
-        String authHeader = "Basic " + new String(encodedAuth);
-        headers.set("Authorization", authHeader);
+        headers.set("Authorization", connector.authorization());
         headers.setContentType(MediaType.APPLICATION_JSON);
         if (StringUtils.isBlank(data))
             return new HttpEntity<>(headers);
         else
             return new HttpEntity<>(data, headers);
     }
-    private Optional<ResponseEntity<String>> exchange(String url, HttpMethod method, HttpEntity httpEntity, String message) {
+    // requests are executed by request executor, number of requests in flight is limited by ConcurrencyLimiter;
+    // failed requests are submitted again after retry delay (see RetryPolicy), waiting does not occupy request thread
+    private CompletableFuture<Optional<ResponseEntity<String>>> exchangeAsync(String url, HttpMethod method, HttpEntity httpEntity, String message) {
+        CompletableFuture<Optional<ResponseEntity<String>>> result = new CompletableFuture<>();
+        submit(url, method, httpEntity, message, 1, result);
+        return result;
+    }
+    private void submit(String url, HttpMethod method, HttpEntity httpEntity, String message, int attempt,
+                        CompletableFuture<Optional<ResponseEntity<String>>> result) {
+        try {
+            concurrencyLimiter.submit(() -> exchange(url, method, httpEntity, message, attempt, result));
+        } catch (RuntimeException e) {
+            // e.g. executors are shut down, waiting callers should not hang
+            result.completeExceptionally(e);
+        }
+    }
+    // blocking API waits for asynchronous one, unchecked exceptions are passed to caller as is
+    private <T> T await(CompletableFuture<T> future) {
         try {
-            return Optional.ofNullable(new RestTemplate().exchange(url, method, httpEntity, String.class));
-        } catch (ResourceAccessException e) {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+    // returns true if request is throttled by server; result is completed on every path (or request is retried)
+    private boolean exchange(String url, HttpMethod method, HttpEntity httpEntity, String message, int attempt,
+                             CompletableFuture<Optional<ResponseEntity<String>>> result) {
+        try {
+            result.complete(Optional.ofNullable(connector.exchange(url, method, httpEntity, String.class)));
+        } catch (RestClientException e) {
+            try {
+                long delay = retryPolicy.delay(method, e, attempt);
+                if (delay >= 0) {
+                    log.info("retrying {} in {} ms (attempt {} failed: {})", message, delay, attempt, e.getMessage());
+                    executors.retry().schedule(() -> submit(url, method, httpEntity, message, attempt + 1, result), delay, TimeUnit.MILLISECONDS);
+                } else if (failed(e, message)) {
+                    result.complete(Optional.empty());
+                } else {
+                    result.completeExceptionally(e);
+                }
+            } catch (RuntimeException re) {
+                // e.g. retry executor is shut down
+                e.addSuppressed(re);
+                result.completeExceptionally(e);
+            }
+            return isThrottled(e);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return false;
+    }
+    private boolean isThrottled(RestClientException e) {
+        return e instanceof HttpStatusCodeException
+            && (((HttpStatusCodeException) e).getRawStatusCode() == 429 || ((HttpStatusCodeException) e).getRawStatusCode() == 503);
+    }
+    // logs failed request, returns false for unexpected exceptions (passed to caller)
+    private boolean failed(RestClientException e, String message) {
+        if (e instanceof ResourceAccessException) {
             log.warn("Confluence server access exception: {}", e.getMessage());
-        } catch (HttpClientErrorException e) {
-            switch (e.getStatusCode().value()) {
+        } else if (e instanceof HttpClientErrorException) {
+            HttpClientErrorException ce = (HttpClientErrorException) e;
+            switch (ce.getStatusCode().value()) {
                 case 400:
                 case 403:
                 case 404:
-                    log.warn("Confluence server error {}: {} {}", message, e.getStatusCode(), e.getStatusText());
+                    log.warn("Confluence server error {}: {} {}", message, ce.getStatusCode(), ce.getStatusText());
                     break;
                 default:
-                    log.error("Unexpected HTTP error {}: {} {}", message, e.getStatusCode(), e.getStatusText());
+                    log.error("Unexpected HTTP error {}: {} {}", message, ce.getStatusCode(), ce.getStatusText());
             }
+        } else if (e instanceof HttpServerErrorException) {
+            HttpServerErrorException se = (HttpServerErrorException) e;
+            log.error("Confluence server error {}: {} {}", message, se.getStatusCode(), se.getStatusText());
+        } else {
+            return false;
         }
-        return Optional.empty();
+        return true;
     }
 
     private String baseUrl() {
@@ -401,7 +624,7 @@ public class Confluence {
     private Optional<Page> parsePageJson(FluentJson pageJson) {
 //        System.err.println(pageJson.toPrettyString(2));
         try {
-            return Optional.ofNullable(new Page()
+            Page page = new Page()
                     .id(pageJson.getString("id").replaceAll("\"", ""))
                     .title(pageJson.getString("title").replaceAll("\"", ""))
                     .version(pageJson.get("version").getInt("number"))
@@ -410,11 +633,25 @@ public class Confluence {
                             .stream()
                             .map(lr -> lr.getString("name").replaceAll("\"", ""))
                             .collect(Collectors.toList())
-                    )
-            );
+                    );
+            parseContentHash(pageJson, page);
+            return Optional.of(page);
         } catch (Exception e) {
             log.warn("error parsing page json: {}", e.getMessage());
             return Optional.empty();
         }
     }
+    private void parseContentHash(FluentJson pageJson, Page page) {
+        try {
+            Optional.ofNullable(pageJson.get("metadata").get("properties"))
+                .map(properties -> properties.get(HASH_PROPERTY))
+                .ifPresent(property -> page
+                    .hashPropertyVersion(property.get("version").getInt("number"))
+                    .hashVersion(property.get("value").getInt("version"))
+                    .hash(property.get("value").getString("hash").replaceAll("\"", ""))
+                );
+        } catch (Exception e) {
+            log.trace("error parsing content hash property for page #{}: {}", page.id(), e.getMessage());
+        }
+    }
 }
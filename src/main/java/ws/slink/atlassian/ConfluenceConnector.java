@@ -0,0 +1,154 @@
+package ws.slink.atlassian;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import ws.slink.config.AppConfig;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * single shared HTTP client for confluence server requests: pooled keep-alive connections (see a2c.http-pool-size),
+ * connect and read timeouts (see a2c.http-connect-timeout, a2c.http-read-timeout), authorization header computed
+ * once per credentials;
+ *
+ * request count, failures, latency and peak number of concurrent requests are collected, so that connection pool
+ * can be sized to actual load (see {@link #stats()})
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ConfluenceConnector {
+
+    // idle connections are checked before reuse, as server could close them
+    private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+    private static final long MAX_IDLE_TIME = 30;
+
+    private final AppConfig appConfig;
+
+    private volatile CloseableHttpClient httpClient;
+    private volatile RestTemplate restTemplate;
+    private volatile String credentials;
+    private volatile String authorization;
+
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final AtomicInteger failures = new AtomicInteger(0);
+    private final AtomicLong time = new AtomicLong(0);
+    private final AtomicLong maxTime = new AtomicLong(0);
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicInteger peak = new AtomicInteger(0);
+
+    public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> httpEntity, Class<T> responseType) {
+        RestTemplate template = restTemplate();
+        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+        long started = System.nanoTime();
+        try {
+            return template.exchange(url, method, httpEntity, responseType);
+        } catch (RestClientException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            active.decrementAndGet();
+            requests.incrementAndGet();
+            time.addAndGet(elapsed);
+            maxTime.accumulateAndGet(elapsed, Math::max);
+            log.trace("{} {} - {} ms", method, url, elapsed);
+        }
+    }
+
+    /**
+     * @return basic authorization header value for configured user
+     */
+    public String authorization() {
+        String current = appConfig.getUser() + ":" + appConfig.getPass();
+        if (!current.equals(credentials)) {
+            authorization = "Basic " + new String(Base64.encodeBase64(current.getBytes(StandardCharsets.US_ASCII)), StandardCharsets.US_ASCII);
+            credentials = current;
+        }
+        return authorization;
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    public int failures() {
+        return failures.get();
+    }
+
+    /**
+     * @return total time (in milliseconds) spent waiting for responses
+     */
+    public long time() {
+        return time.get();
+    }
+
+    public String stats() {
+        int count = requests.get();
+        return String.format("%d request(s), %d failure(s), latency avg %d ms, max %d ms, peak concurrency %d (pool size %d)",
+            count, failures.get(), count > 0 ? time.get() / count : 0, maxTime.get(), peak.get(), poolSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (null != httpClient) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.trace("error closing http client: {}", e.getMessage());
+            }
+        }
+    }
+
+    // client is created on first request, when configuration (incl. command line arguments) is complete
+    private RestTemplate restTemplate() {
+        if (null == restTemplate) {
+            synchronized (this) {
+                if (null == restTemplate) {
+                    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+                    connectionManager.setMaxTotal(poolSize());
+                    connectionManager.setDefaultMaxPerRoute(poolSize());
+                    connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+                    httpClient = HttpClients.custom()
+                        .setConnectionManager(connectionManager)
+                        .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectTimeout(appConfig.getHttpConnectTimeout())
+                            .setConnectionRequestTimeout(appConfig.getHttpReadTimeout())
+                            .setSocketTimeout(appConfig.getHttpReadTimeout())
+                            .build())
+                        .evictIdleConnections(MAX_IDLE_TIME, TimeUnit.SECONDS)
+                        .disableCookieManagement()
+                        .build();
+                    log.debug("http client: pool size {}, connect timeout {} ms, read timeout {} ms",
+                        poolSize(), appConfig.getHttpConnectTimeout(), appConfig.getHttpReadTimeout());
+                    restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+                }
+            }
+        }
+        return restTemplate;
+    }
+
+    private int poolSize() {
+        return appConfig.getHttpPoolSize();
+    }
+
+}
@@ -0,0 +1,142 @@
+package ws.slink.atlassian;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import ws.slink.config.AppConfig;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * decides whether failed confluence server request is to be retried and when;
+ *
+ * throttled (429) and unavailable (503) requests, as well as requests which could not connect to server, are not
+ * processed by server and are retried for any method; gateway errors (502, 504) and other I/O errors are retried for
+ * idempotent methods only, so that pages are not created twice;
+ *
+ * retry delay grows exponentially from a2c.http-retry-delay up to a2c.http-retry-max-delay and is randomized
+ * (between half and full delay), so that concurrent requests failed at once are not retried at once; delay requested
+ * by server with 'Retry-After' header is honored; number of retries is limited per request (see a2c.http-retries)
+ * and per run (see a2c.http-retry-budget), so that unavailable server does not stall processing
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class RetryPolicy {
+
+    private static final Set<HttpMethod> IDEMPOTENT = EnumSet.of(
+        HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+
+    private final AppConfig appConfig;
+
+    private final AtomicInteger retries = new AtomicInteger(0);
+    private final AtomicInteger budgetUsed = new AtomicInteger(0);
+    private final AtomicBoolean budgetExhausted = new AtomicBoolean(false);
+
+    /**
+     * @param attempt number of failed attempt (starting with 1)
+     * @return delay (in milliseconds) before next attempt or -1 if request is not to be retried
+     */
+    public long delay(HttpMethod method, RestClientException e, int attempt) {
+        if (attempt > appConfig.getHttpRetries() || !retryable(method, e))
+            return -1;
+
+        long retryAfter = retryAfter(e);
+        if (retryAfter > maxDelay()) {
+            log.warn("server asks to retry in {} ms, which exceeds maximum retry delay of {} ms", retryAfter, maxDelay());
+            return -1;
+        }
+
+        if (budgetUsed.incrementAndGet() > appConfig.getHttpRetryBudget()) {
+            if (budgetExhausted.compareAndSet(false, true))
+                log.warn("retry budget of {} retries is exhausted, failed requests are not retried anymore", appConfig.getHttpRetryBudget());
+            return -1;
+        }
+
+        retries.incrementAndGet();
+        return Math.max(retryAfter, backoff(attempt));
+    }
+
+    /**
+     * @return total number of retries
+     */
+    public int retries() {
+        return retries.get();
+    }
+
+    /**
+     * restores retry budget (at the beginning of a run)
+     */
+    public void reset() {
+        budgetUsed.set(0);
+        budgetExhausted.set(false);
+    }
+
+    private boolean retryable(HttpMethod method, RestClientException e) {
+        if (e instanceof HttpStatusCodeException) {
+            int status = ((HttpStatusCodeException) e).getRawStatusCode();
+            if (status == 429 || status == 503)
+                return true;
+            return (status == 502 || status == 504) && IDEMPOTENT.contains(method);
+        }
+        if (e instanceof ResourceAccessException) {
+            // request is not sent if connection could not be established
+            return e.getCause() instanceof ConnectException
+                || e.getCause() instanceof ConnectTimeoutException
+                || IDEMPOTENT.contains(method);
+        }
+        return false;
+    }
+
+    // exponential backoff with jitter: random delay between half and full exponential delay
+    private long backoff(int attempt) {
+        long delay = Math.min(maxDelay(), Math.max(1, appConfig.getHttpRetryDelay()) << Math.min(attempt - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    // 'Retry-After' header value (delay in seconds or HTTP date) in milliseconds, 0 if not set
+    private long retryAfter(RestClientException e) {
+        if (!(e instanceof HttpStatusCodeException) || null == ((HttpStatusCodeException) e).getResponseHeaders())
+            return 0;
+        String value = StringUtils.trimToEmpty(((HttpStatusCodeException) e).getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        if (value.isEmpty())
+            return 0;
+        if (StringUtils.isNumeric(value)) {
+            // too large values mean no retry (see delay), but should not overflow
+            try {
+                return Math.multiplyExact(Long.parseLong(value), 1000L);
+            } catch (ArithmeticException | NumberFormatException ex) {
+                return Long.MAX_VALUE;
+            }
+        }
+        try {
+            return Math.max(0, Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis());
+        } catch (DateTimeParseException ex) {
+            log.trace("could not parse Retry-After header: {}", value);
+            return 0;
+        }
+    }
+
+    private long maxDelay() {
+        return appConfig.getHttpRetryMaxDelay();
+    }
+
+}
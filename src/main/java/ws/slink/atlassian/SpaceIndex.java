@@ -0,0 +1,137 @@
+package ws.slink.atlassian;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ws.slink.model.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * in-memory index of confluence space pages (title, id, version, labels, content hash), loaded with a single space
+ * listing (see {@link Confluence#getPages(String)}) and kept up to date as pages are created, updated and removed
+ * during the run, so that page lookups do not need a request per document;
+ *
+ * index is enabled for runs processing whole directories: space snapshot is loaded on first lookup in the space;
+ * while index is disabled (e.g. only a few documents are processed), lookups are passed to confluence server
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SpaceIndex {
+
+    private final Confluence confluence;
+
+    private final Map<String, Snapshot> spaces = new ConcurrentHashMap<>();
+    private volatile boolean enabled = false;
+
+    private static class Snapshot {
+        private boolean complete = true;
+        private final Map<String, Page> byTitle = new ConcurrentHashMap<>();
+        private final Map<String, Page> byId = new ConcurrentHashMap<>();
+        private void put(Page page) {
+            Optional.ofNullable(byId.put(page.id(), page))
+                .filter(previous -> !previous.title().equals(page.title()))
+                .ifPresent(previous -> byTitle.remove(previous.title(), previous));
+            byTitle.put(page.title(), page);
+        }
+        private void remove(String pageId) {
+            Optional.ofNullable(byId.remove(pageId)).ifPresent(page -> byTitle.remove(page.title(), page));
+        }
+    }
+
+    /**
+     * enables index: space snapshots are loaded on first use
+     */
+    public void enable() {
+        enabled = true;
+    }
+
+    /**
+     * disables index and drops all the loaded snapshots, so that pages are requested from server again
+     */
+    public void clear() {
+        enabled = false;
+        spaces.clear();
+    }
+
+    public Optional<String> getPageId(String space, String title) {
+        Snapshot snapshot = snapshot(space);
+        return (null == snapshot)
+            ? confluence.getPageId(space, title)
+            : Optional.ofNullable(snapshot.byTitle.get(title)).map(Page::id);
+    }
+
+    public Optional<Page> getPage(String space, String title) {
+        Snapshot snapshot = snapshot(space);
+        return (null == snapshot)
+            ? confluence.getPage(space, title)
+            : Optional.ofNullable(snapshot.byTitle.get(title));
+    }
+
+    /**
+     * pages, which are not found in space snapshot (e.g. moved to other space), are requested from server
+     */
+    public Optional<Page> getPageById(String space, String pageId) {
+        Snapshot snapshot = snapshot(space);
+        return Optional.ofNullable(null == snapshot ? null : snapshot.byId.get(pageId))
+            .map(Optional::of)
+            .orElseGet(() -> confluence.getPage(pageId));
+    }
+
+    /**
+     * @return all the pages of space
+     */
+    public List<Page> getPages(String space) {
+        Snapshot snapshot = snapshot(space);
+        return (null == snapshot)
+            ? confluence.getPages(space)
+            : new ArrayList<>(snapshot.byId.values());
+    }
+
+    /**
+     * records created or updated page
+     */
+    public void put(String space, Page page) {
+        Optional.ofNullable(snapshot(space)).ifPresent(snapshot -> snapshot.put(page));
+    }
+
+    /**
+     * records removed page
+     */
+    public void remove(String pageId) {
+        spaces.values().forEach(snapshot -> snapshot.remove(pageId));
+    }
+
+    // snapshot of space, null if index is disabled or space listing failed
+    private Snapshot snapshot(String space) {
+        if (StringUtils.isBlank(space))
+            return null;
+        Snapshot snapshot = (!enabled || !confluence.canPublish())
+            ? spaces.get(space)
+            : spaces.computeIfAbsent(space, this::load);
+        return (null != snapshot && snapshot.complete) ? snapshot : null;
+    }
+
+    private Snapshot load(String space) {
+        Snapshot snapshot = new Snapshot();
+        Optional<List<Page>> pages = confluence.listPages(space);
+        if (pages.isPresent()) {
+            pages.get().forEach(snapshot::put);
+            log.debug("loaded {} page(s) of space {}", snapshot.byId.size(), space);
+        } else {
+            // incomplete snapshot could lead to duplicate pages, so server is queried for every page instead
+            log.warn("could not load pages of space {}, requesting pages one by one", space);
+            snapshot.complete = false;
+        }
+        return snapshot;
+    }
+
+}
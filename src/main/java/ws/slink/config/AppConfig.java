@@ -21,6 +21,46 @@ import java.util.List;
  *   a2c.clean - CSV list of confluence spaces to be cleaned up
  *   a2c.force - perform forced clean up (remove all including 'protected' pages)
  *   a2c.debug - print document to stdout in case of processing error
+ *   a2c.engines - asciidoctor engines pool size (defaults to number of available processors)
+ *   a2c.convert-threads - document conversion threads (defaults to number of available processors)
+ *   a2c.publish-threads - document publishing threads (defaults to 4 x number of available processors)
+ *   a2c.backend - conversion backend: 'confluence' (default, native storage format converter)
+ *                 or 'xhtml5' (html conversion fixed up by postprocessors)
+ *   a2c.http-pool-size - maximum number of (keep-alive) connections to confluence server (defaults to 20)
+ *   a2c.http-connect-timeout - confluence server connect timeout in milliseconds (defaults to 10000)
+ *   a2c.http-read-timeout - confluence server response timeout in milliseconds (defaults to 60000)
+ *   a2c.http-max-in-flight - maximum number of concurrent requests to confluence server (defaults to http-pool-size)
+ *   a2c.adaptive-concurrency - adjust number of concurrent requests to confluence server (up to http-max-in-flight)
+ *                              to observed response times and throttling (defaults to true)
+ *   a2c.http-latency-target - 95th percentile of response times (in milliseconds) to keep concurrency limit under,
+ *                             0 for twice the lowest observed percentile (defaults to 0)
+ *   a2c.http-retries - maximum number of retries of failed confluence server request, 0 disables retries (defaults to 3)
+ *   a2c.http-retry-delay - initial retry delay in milliseconds, doubled with every retry (defaults to 500)
+ *   a2c.http-retry-max-delay - maximum retry delay in milliseconds (defaults to 30000)
+ *   a2c.http-retry-budget - maximum number of retries per run (defaults to 100)
+ *   a2c.page-size - number of pages requested at once when listing confluence space (defaults to 100,
+ *                   server could reduce it to its own maximum)
+ *   a2c.cache-dir - directory for cached data (defaults to ~/.cache/asciidoc2confluence)
+ *   a2c.manifest - keep manifest of published pages (source file -> page id, version, title, content hash)
+ *                  in cache directory, so that pages are found by id instead of title (defaults to true)
+ *   a2c.conversion-cache - keep converted documents in cache directory, so that documents with unchanged sources
+ *                          (including included files) are not converted again (defaults to true)
+ *   a2c.conversion-cache-size - conversion cache size limit in megabytes (defaults to 256)
+ *   a2c.include-cache-size - in-memory included files cache size limit in megabytes, 0 disables cache
+ *                            (defaults to 64)
+ *   a2c.include-tracking - read local includes with own include processor, recording included files of each document
+ *                          (defaults to true); when disabled includes are processed by asciidoctor, documents with
+ *                          includes are not cached and are not found by changed included files
+ *   a2c.incremental - process only documents changed in git repository since last published revision
+ *                     (recorded in manifest after successful run)
+ *   a2c.since - process only documents changed in git repository since given revision
+ *   a2c.watch - keep running after processing directory, watching it for changes and processing changed documents
+ *   a2c.watch-debounce - quiet period (in milliseconds) after last change before changed documents are processed
+ *                        (defaults to 300)
+ *   a2c.daemon - run as resident process serving conversion/publishing jobs over HTTP
+ *   a2c.daemon-token - token to be passed by job API clients in 'Authorization: Bearer <token>' header
+ *                      (mandatory in daemon mode)
+ *   a2c.daemon-root - directory job input files and directories should reside in (defaults to working directory)
  *
  */
 
@@ -37,6 +77,34 @@ public class AppConfig {
     private String space;
     private boolean debug;
     private boolean force;
+    private int engines;
+    private int convertThreads;
+    private int publishThreads;
+    private boolean daemon;
+    private String daemonToken;
+    private String daemonRoot = System.getProperty("user.dir");
+    private String backend = "confluence";
+    private int httpPoolSize = 20;
+    private int httpConnectTimeout = 10000;
+    private int httpReadTimeout = 60000;
+    private int httpMaxInFlight;
+    private boolean adaptiveConcurrency = true;
+    private long httpLatencyTarget;
+    private int httpRetries = 3;
+    private long httpRetryDelay = 500;
+    private long httpRetryMaxDelay = 30000;
+    private int httpRetryBudget = 100;
+    private int pageSize = 100;
+    private String cacheDir = System.getProperty("user.home") + "/.cache/asciidoc2confluence";
+    private boolean manifest = true;
+    private boolean conversionCache = true;
+    private int conversionCacheSize = 256;
+    private int includeCacheSize = 64;
+    private boolean includeTracking = true;
+    private boolean incremental;
+    private String since;
+    private boolean watch;
+    private long watchDebounce = 300;
     private List<String> clean = new ArrayList<>();
 
 }
@@ -40,6 +40,90 @@ public class CommandLineArguments {
         if (args.containsOption("dbg")) {
             appConfig.setDebug(true);
         }
+        if (args.containsOption("convert-threads")) {
+            appConfig.setConvertThreads(Integer.parseInt(args.getOptionValues("convert-threads").get(0)));
+        }
+        if (args.containsOption("publish-threads")) {
+            appConfig.setPublishThreads(Integer.parseInt(args.getOptionValues("publish-threads").get(0)));
+        }
+        if (args.containsOption("daemon")) {
+            appConfig.setDaemon(true);
+        }
+        if (args.containsOption("daemon-token")) {
+            appConfig.setDaemonToken(args.getOptionValues("daemon-token").get(0));
+        }
+        if (args.containsOption("daemon-root")) {
+            appConfig.setDaemonRoot(args.getOptionValues("daemon-root").get(0));
+        }
+        if (args.containsOption("backend")) {
+            appConfig.setBackend(args.getOptionValues("backend").get(0));
+        }
+        if (args.containsOption("http-pool-size")) {
+            appConfig.setHttpPoolSize(Integer.parseInt(args.getOptionValues("http-pool-size").get(0)));
+        }
+        if (args.containsOption("http-connect-timeout")) {
+            appConfig.setHttpConnectTimeout(Integer.parseInt(args.getOptionValues("http-connect-timeout").get(0)));
+        }
+        if (args.containsOption("http-read-timeout")) {
+            appConfig.setHttpReadTimeout(Integer.parseInt(args.getOptionValues("http-read-timeout").get(0)));
+        }
+        if (args.containsOption("http-max-in-flight")) {
+            appConfig.setHttpMaxInFlight(Integer.parseInt(args.getOptionValues("http-max-in-flight").get(0)));
+        }
+        if (args.containsOption("no-adaptive-concurrency")) {
+            appConfig.setAdaptiveConcurrency(false);
+        }
+        if (args.containsOption("http-latency-target")) {
+            appConfig.setHttpLatencyTarget(Long.parseLong(args.getOptionValues("http-latency-target").get(0)));
+        }
+        if (args.containsOption("http-retries")) {
+            appConfig.setHttpRetries(Integer.parseInt(args.getOptionValues("http-retries").get(0)));
+        }
+        if (args.containsOption("http-retry-delay")) {
+            appConfig.setHttpRetryDelay(Long.parseLong(args.getOptionValues("http-retry-delay").get(0)));
+        }
+        if (args.containsOption("http-retry-max-delay")) {
+            appConfig.setHttpRetryMaxDelay(Long.parseLong(args.getOptionValues("http-retry-max-delay").get(0)));
+        }
+        if (args.containsOption("http-retry-budget")) {
+            appConfig.setHttpRetryBudget(Integer.parseInt(args.getOptionValues("http-retry-budget").get(0)));
+        }
+        if (args.containsOption("page-size")) {
+            appConfig.setPageSize(Integer.parseInt(args.getOptionValues("page-size").get(0)));
+        }
+        if (args.containsOption("cache-dir")) {
+            appConfig.setCacheDir(args.getOptionValues("cache-dir").get(0));
+        }
+        if (args.containsOption("no-manifest")) {
+            appConfig.setManifest(false);
+        }
+        if (args.containsOption("no-conversion-cache")) {
+            appConfig.setConversionCache(false);
+        }
+        if (args.containsOption("conversion-cache-size")) {
+            appConfig.setConversionCacheSize(Integer.parseInt(args.getOptionValues("conversion-cache-size").get(0)));
+        }
+        if (args.containsOption("include-cache-size")) {
+            appConfig.setIncludeCacheSize(Integer.parseInt(args.getOptionValues("include-cache-size").get(0)));
+        }
+        if (args.containsOption("no-include-tracking")) {
+            appConfig.setIncludeTracking(false);
+        }
+        if (args.containsOption("incremental")) {
+            appConfig.setIncremental(true);
+        }
+        if (args.containsOption("since")) {
+            appConfig.setSince(args.getOptionValues("since").get(0));
+        }
+        if (args.containsOption("watch")) {
+            appConfig.setWatch(true);
+        }
+        if (args.containsOption("watch-debounce")) {
+            appConfig.setWatchDebounce(Long.parseLong(args.getOptionValues("watch-debounce").get(0)));
+        }
+        if (args.containsOption("engines")) {
+            appConfig.setEngines(Integer.parseInt(args.getOptionValues("engines").get(0)));
+        }
     }
 
 
@@ -0,0 +1,62 @@
+package ws.slink.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ws.slink.config.AppConfig;
+import ws.slink.tools.FluentJson;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * authenticates daemon mode HTTP requests: configured token (see a2c.daemon-token) should be passed in
+ * 'Authorization: Bearer <token>' header; requests are rejected if no token is configured
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class JobApiTokenFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final AppConfig appConfig;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        if (authorized(request.getHeader(HttpHeaders.AUTHORIZATION))) {
+            chain.doFilter(request, response);
+        } else {
+            log.warn("unauthorized request {} {} from {}", request.getMethod(), request.getRequestURI(), request.getRemoteAddr());
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(new FluentJson().set("error", "unauthorized").toString());
+        }
+    }
+
+    private boolean authorized(String header) {
+        if (StringUtils.isBlank(appConfig.getDaemonToken()) || null == header || !header.startsWith(BEARER))
+            return false;
+        // constant time comparison
+        return MessageDigest.isEqual(
+            header.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8),
+            appConfig.getDaemonToken().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
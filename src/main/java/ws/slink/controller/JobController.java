@@ -0,0 +1,160 @@
+package ws.slink.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.json.simple.JSONArray;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ws.slink.config.AppConfig;
+import ws.slink.model.Job;
+import ws.slink.model.ProcessingResult;
+import ws.slink.service.JobService;
+import ws.slink.tools.FluentJson;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * daemon mode HTTP interface:
+ *
+ *   POST /api/jobs/file      {"input": "path/to/file.adoc", "space": "KEY"}
+ *   POST /api/jobs/directory {"dir": "path/to/directory", "space": "KEY"}
+ *   POST /api/jobs/batch     {"files": ["..."], "dirs": ["..."], "space": "KEY"}
+ *   GET  /api/jobs
+ *   GET  /api/jobs/{id}
+ *
+ * "space" is optional and defaults to configured confluence space (--space); relative paths are resolved against
+ * configured root directory (--daemon-root), paths outside of it are rejected; requests are authenticated
+ * with {@link JobApiTokenFilter}
+ *
+ */
+@Slf4j
+@RestController
+@ConditionalOnWebApplication
+@RequestMapping(value = "/api/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class JobController {
+
+    private final AppConfig appConfig;
+    private final JobService jobService;
+
+    @PostMapping("/file")
+    public ResponseEntity<String> file(@RequestBody String body) {
+        FluentJson request = new FluentJson(body);
+        return submit(new Job().space(space(request)).files(paths(request, "input")));
+    }
+
+    @PostMapping("/directory")
+    public ResponseEntity<String> directory(@RequestBody String body) {
+        FluentJson request = new FluentJson(body);
+        return submit(new Job().space(space(request)).dirs(paths(request, "dir")));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<String> batch(@RequestBody String body) {
+        FluentJson request = new FluentJson(body);
+        return submit(new Job().space(space(request)).files(paths(request, "files")).dirs(paths(request, "dirs")));
+    }
+
+    @GetMapping
+    public ResponseEntity<String> list() {
+        List<Object> result = jobService.list().stream().map(j -> toJson(j).get()).collect(Collectors.toList());
+        return ResponseEntity.ok(new FluentJson(result).toString());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<String> get(@PathVariable("id") String id) {
+        return jobService
+            .get(id)
+            .map(j -> ResponseEntity.ok(toJson(j).toString()))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(error("job not found: " + id)));
+    }
+
+    private ResponseEntity<String> submit(Job job) {
+        if (job.isEmpty())
+            return ResponseEntity.badRequest().body(error("no input files or directories set"));
+        if (StringUtils.isBlank(job.space()))
+            return ResponseEntity.badRequest().body(error("no confluence space set"));
+        Optional<String> outside = Stream.concat(job.files().stream(), job.dirs().stream()).filter(p -> !insideRoot(p)).findFirst();
+        if (outside.isPresent())
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error("path is outside of root directory: " + outside.get()));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(toJson(jobService.submit(job)).toString());
+    }
+
+    private String space(FluentJson request) {
+        List<String> space = strings(request, "space");
+        return space.isEmpty() ? appConfig.getSpace() : space.get(0);
+    }
+
+    // request paths resolved against root directory
+    private List<String> paths(FluentJson request, String key) {
+        Path root = Paths.get(appConfig.getDaemonRoot()).toAbsolutePath();
+        return strings(request, key)
+            .stream()
+            .map(p -> root.resolve(p).normalize().toString())
+            .collect(Collectors.toList());
+    }
+
+    // symbolic links are resolved, so that they can not point outside of root directory
+    private boolean insideRoot(String path) {
+        try {
+            Path root = Paths.get(appConfig.getDaemonRoot()).toRealPath();
+            Path target = Paths.get(path);
+            return (Files.exists(target) ? target.toRealPath() : target).startsWith(root);
+        } catch (IOException e) {
+            log.warn("error resolving path {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    private List<String> strings(FluentJson request, String key) {
+        Object value = Optional.ofNullable(request.get(key)).map(FluentJson::get).orElse(null);
+        List<String> result;
+        if (value instanceof JSONArray)
+            result = ((List<?>) value).stream().map(String::valueOf).collect(Collectors.toList());
+        else if (null != value)
+            result = Arrays.asList(value.toString());
+        else
+            result = Collections.emptyList();
+        return result.stream().filter(StringUtils::isNotBlank).collect(Collectors.toList());
+    }
+
+    private FluentJson toJson(Job job) {
+        FluentJson result = new FluentJson()
+            .set("id", job.id())
+            .set("status", job.status().name())
+            .set("space", job.space())
+            .set("files", job.files())
+            .set("dirs", job.dirs())
+            .set("submitted", job.submitted().toString());
+        Optional.ofNullable(job.started()).ifPresent(v -> result.set("started", v.toString()));
+        Optional.ofNullable(job.finished()).ifPresent(v -> result.set("finished", v.toString()));
+        Optional.ofNullable(job.result()).ifPresent(r -> {
+            FluentJson counters = new FluentJson();
+            Arrays.stream(ProcessingResult.ResultType.values())
+                .filter(t -> r.get(t).get() > 0)
+                .forEach(t -> counters.set(t.name(), r.get(t).get()));
+            result.set("result", counters);
+        });
+        Optional.ofNullable(job.report()).ifPresent(v -> result.set("report", v));
+        return result;
+    }
+
+    private String error(String message) {
+        return new FluentJson().set("error", message).toString();
+    }
+
+}
@@ -0,0 +1,45 @@
+package ws.slink.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * documents changed in directory of git repository between two revisions (see {@link ws.slink.service.GitService});
+ * all the paths are absolute
+ */
+@Getter
+@Setter
+@Accessors(fluent = true)
+public class ChangeSet {
+
+    // added, modified and renamed (new path) documents
+    private List<String> changed = new ArrayList<>();
+    // deleted documents
+    private List<String> deleted = new ArrayList<>();
+    // renamed documents: old path -> new path
+    private Map<String, String> renamed = new LinkedHashMap<>();
+    // all the changed files in repository (documents and other files, e.g. included ones)
+    private List<String> files = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+            .append("changed: ")
+            .append(changed.size())
+            .append(", deleted: ")
+            .append(deleted.size())
+            .append(", renamed: ")
+            .append(renamed.size())
+            .toString();
+    }
+}
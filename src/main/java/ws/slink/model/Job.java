@@ -0,0 +1,53 @@
+package ws.slink.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Accessors(fluent = true)
+public class Job {
+
+    public enum Status {
+        JS_QUEUED,
+        JS_RUNNING,
+        JS_FINISHED,
+        JS_FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Instant submitted = Instant.now();
+    private String space;
+    private List<String> files = new ArrayList<>();
+    private List<String> dirs = new ArrayList<>();
+    private volatile Status status = Status.JS_QUEUED;
+    private volatile Instant started;
+    private volatile Instant finished;
+    private volatile ProcessingResult result;
+    private volatile String report;
+
+    public boolean isEmpty() {
+        return files.isEmpty() && dirs.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+            .append(id)
+            .append(" [")
+            .append(status)
+            .append("] ")
+            .append(space)
+            .append(" files: ")
+            .append(files)
+            .append(" dirs: ")
+            .append(dirs)
+            .toString();
+    }
+}
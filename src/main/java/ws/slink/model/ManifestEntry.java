@@ -0,0 +1,38 @@
+package ws.slink.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * confluence page published from source file (see {@link ws.slink.service.ManifestService})
+ */
+@Getter
+@Setter
+@Accessors(fluent = true)
+public class ManifestEntry {
+
+    private String url;
+    private String space;
+    private String path;
+    private String pageId;
+    private int version;
+    private String title;
+    private String hash;
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+            .append(path)
+            .append(" -> #")
+            .append(pageId)
+            .append(" v.")
+            .append(version)
+            .append(" '")
+            .append(title)
+            .append("' (")
+            .append(space)
+            .append(")")
+            .toString();
+    }
+}
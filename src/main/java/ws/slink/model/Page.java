@@ -16,6 +16,18 @@ public class Page {
     int version;
     List<String> labels;
 
+    // content hash stored in page property on last update, page version it was stored for and property version
+    String hash;
+    int hashVersion;
+    int hashPropertyVersion;
+
+    /**
+     * @return true if page was last updated with given content hash and was not modified since
+     */
+    public boolean unchanged(String contentHash) {
+        return null != hash && hash.equals(contentHash) && hashVersion == version;
+    }
+
     public String toString() {
         return new StringBuilder()
             .append(id)
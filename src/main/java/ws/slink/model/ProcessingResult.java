@@ -10,6 +10,8 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static ws.slink.model.ProcessingResult.ResultType.*;
+
 @Setter
 @Getter
 @Accessors(fluent = true)
@@ -25,8 +27,15 @@ public class ProcessingResult {
         RT_PUB_FAILURE,  // publication failure
         RT_UPD_FAILURE,  // update failure
         RT_SKP_HIDDEN,   // skipped hidden file
+        RT_SKP_UNCHANGED,// skipped unchanged page (content hash matches)
         RT_DEL_SUCCESS,  // removal success
         RT_DEL_FAILURE,  // removal failure
+        RT_INC_HIT,      // included file read from include cache
+        RT_INC_MISS,     // included file read from disk
+        RT_HTTP_REQUEST, // confluence server request
+        RT_HTTP_FAILURE, // failed confluence server request
+        RT_HTTP_RETRY,   // retried confluence server request
+        RT_HTTP_TIME,    // time (ms) spent waiting for confluence server responses
 //        RT_FILE_SKIPPED, // document skipped due to being "hidden"
 //        RT_DIR_SKIPPED,  // if no .properies file found or no needed data exists in .properties file
 //        RT_FILE_PRINTED  // file printed instead of being published
@@ -48,10 +57,20 @@ public class ProcessingResult {
         return this;
     }
 
+    public ProcessingResult add(ResultType key, int count) {
+        results.computeIfAbsent(key, k -> new AtomicInteger(0)).addAndGet(count);
+        return this;
+    }
+
     public AtomicInteger get(ResultType key) {
         return results.getOrDefault(key, new AtomicInteger(0));
     }
 
+    public boolean hasFailures() {
+        return get(RT_DIR_FAILURE).get() + get(RT_FILE_FAILURE).get()
+             + get(RT_PUB_FAILURE).get() + get(RT_UPD_FAILURE).get() + get(RT_DEL_FAILURE).get() > 0;
+    }
+
     public ProcessingResult merge(ResultType other) {
         this.add(other);
         return this;
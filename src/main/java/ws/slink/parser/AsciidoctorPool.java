@@ -0,0 +1,130 @@
+package ws.slink.parser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.asciidoctor.Asciidoctor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ws.slink.config.AppConfig;
+import ws.slink.processor.*;
+import ws.slink.service.IncludeCache;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * bounded pool of long-lived, fully registered AsciiDoctor instances;
+ *
+ * JRuby runtime start-up is the most expensive part of document conversion, so instead of creating (and shutting
+ * down) AsciiDoctor for each document being processed, instances are created on demand (up to configured pool size)
+ * and reused for subsequent conversions; document-specific data (e.g. confluence space) is passed to extensions
+ * with document attributes
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class AsciidoctorPool {
+
+    private final AppConfig appConfig;
+    private final IncludeCache includeCache;
+
+    private final BlockingQueue<Asciidoctor> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger(0);
+
+    public <T> T execute(Function<Asciidoctor, T> action) {
+        Asciidoctor asciidoctor = borrow();
+        try {
+            return action.apply(asciidoctor);
+        } finally {
+            idle.offer(asciidoctor);
+        }
+    }
+
+    /**
+     * creates all the pool instances beforehand, so that first conversions do not pay for JRuby start-up
+     */
+    public void warmUp() {
+        List<Asciidoctor> borrowed = new ArrayList<>();
+        try {
+            while (created.get() < size())
+                borrowed.add(borrow());
+        } finally {
+            idle.addAll(borrowed);
+        }
+        log.info("asciidoctor pool warmed up: {} instance(s)", created.get());
+    }
+
+    public int size() {
+        return (appConfig.getEngines() > 0)
+            ? appConfig.getEngines()
+            : Runtime.getRuntime().availableProcessors();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Asciidoctor asciidoctor;
+        while (null != (asciidoctor = idle.poll())) {
+            asciidoctor.shutdown();
+            created.decrementAndGet();
+        }
+    }
+
+    private Asciidoctor borrow() {
+        Asciidoctor asciidoctor = idle.poll();
+        if (null != asciidoctor)
+            return asciidoctor;
+        for (int count = created.get(); count < size(); count = created.get()) {
+            if (created.compareAndSet(count, count + 1)) {
+                try {
+                    log.trace("creating asciidoctor instance #{}", count + 1);
+                    return initializeAsciidoctor();
+                } catch (RuntimeException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for asciidoctor instance", e);
+        }
+    }
+
+    private Asciidoctor initializeAsciidoctor() {
+
+        Asciidoctor asciidoctor = Asciidoctor.Factory.create();
+
+        // register converters
+        asciidoctor.javaConverterRegistry().register(ConfluenceConverter.class);
+
+        // register preprocessors
+        asciidoctor.javaExtensionRegistry().preprocessor(LineBlockPreProcessor.class);
+
+        // register include processors
+        asciidoctor.javaExtensionRegistry().includeProcessor(new LocalIncludeProcessor(includeCache, appConfig.isIncludeTracking()));
+
+        // register block processors
+        asciidoctor.javaExtensionRegistry().block(CodeBlockProcessor.class);
+
+        // register (inline) macro processors
+        asciidoctor.javaExtensionRegistry().inlineMacro(ConfluenceLinkInlineMacroProcessor.class);
+        asciidoctor.javaExtensionRegistry().blockMacro(TreeMacroProcessor.class);
+        asciidoctor.javaExtensionRegistry().blockMacro(ChildrenMacroProcessor.class);
+
+        // register postprocessors (code and DOM postprocessors are only applied with 'xhtml5' backend)
+        asciidoctor.javaExtensionRegistry().postprocessor(CodeBlockPostProcessor.class);
+        asciidoctor.javaExtensionRegistry().postprocessor(DomBlockPostProcessor.class);
+        asciidoctor.javaExtensionRegistry().postprocessor(LatexBlockPostProcessor.class);
+
+        return asciidoctor;
+    }
+
+}
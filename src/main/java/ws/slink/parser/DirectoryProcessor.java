@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import ws.slink.config.AppConfig;
 import ws.slink.model.ProcessingResult;
 
 import java.io.File;
@@ -11,61 +12,105 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static ws.slink.model.ProcessingResult.ResultType.RT_DIR_FAILURE;
 import static ws.slink.model.ProcessingResult.ResultType.RT_FILE_FAILURE;
 
+/**
+ * processes directory recursively: all the files of a directory are processed (in parallel) first,
+ * and only then its subdirectories are processed, so that higher-level (parent) pages are published
+ * before their children;
+ *
+ * no thread is blocked while waiting for directory files to be processed: subdirectories processing
+ * is chained to completion of all the files' futures
+ *
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor (onConstructor = @__(@Autowired))
 public class DirectoryProcessor {
 
+    private final AppConfig appConfig;
     private final FileProcessor fileProcessor;
 
     public ProcessingResult process(String directoryPath) {
+        return process(directoryPath, appConfig.getSpace());
+    }
+    public ProcessingResult process(String directoryPath, String space) {
+        return processAsync(directoryPath, space).join();
+    }
+
+    public CompletableFuture<ProcessingResult> processAsync(String directoryPath, String space) {
         log.trace("processing: {}", directoryPath);
-        ProcessingResult result = new ProcessingResult();
-        result.merge(processAllFiles(directoryPath));
-        result.merge(processAllDirectories(directoryPath));
+        return processAllFiles(directoryPath, space)
+            .thenCompose(filesResult -> processAllDirectories(directoryPath, space).thenApply(filesResult::merge));
+    }
+
+    /**
+     * processes given files level by level (directory depth), so that higher-level (parent) pages are published
+     * before their children, as with recursive directory processing
+     */
+    public CompletableFuture<ProcessingResult> processFiles(Collection<String> files, String space) {
+        Map<Integer, List<String>> levels = files
+            .stream()
+            .collect(Collectors.groupingBy(f -> Paths.get(f).getNameCount(), TreeMap::new, Collectors.toList()));
+        CompletableFuture<ProcessingResult> result = CompletableFuture.completedFuture(new ProcessingResult());
+        for (List<String> level : levels.values())
+            result = result.thenCompose(r -> join(level
+                .stream()
+                .map(f -> fileProcessor.processAsync(f, space))
+                .collect(Collectors.toList())).thenApply(r::merge));
         return result;
     }
 
-    private ProcessingResult processAllFiles(String directoryPath) {
-        try {
-            ProcessingResult result = new ProcessingResult();
-            Files.list(Paths.get(directoryPath))
+    private CompletableFuture<ProcessingResult> processAllFiles(String directoryPath, String space) {
+        try (Stream<Path> paths = Files.list(Paths.get(directoryPath))) {
+            return join(paths
                 .map(Path::toFile)
                 .filter(File::isFile)
                 .filter(f -> f.getName().endsWith(".adoc") || f.getName().endsWith(".asciidoc"))
                 .map(f -> f.getAbsolutePath())
-                .parallel()
-                .forEach(f -> result.merge(fileProcessor.process(f)));
-            return result;
+                .map(f -> fileProcessor.processAsync(f, space))
+                .collect(Collectors.toList()));
         } catch (IOException e) {
             log.error("error processing files in {}: {}", directoryPath, e.getMessage());
             if (log.isTraceEnabled())
                 e.printStackTrace();
-            return new ProcessingResult(RT_FILE_FAILURE);
+            return CompletableFuture.completedFuture(new ProcessingResult(RT_FILE_FAILURE));
         }
     }
 
-    private ProcessingResult processAllDirectories(String directoryPath) {
-        try {
-            ProcessingResult result = new ProcessingResult();
-            Files.list(Paths.get(directoryPath))
+    private CompletableFuture<ProcessingResult> processAllDirectories(String directoryPath, String space) {
+        try (Stream<Path> paths = Files.list(Paths.get(directoryPath))) {
+            return join(paths
                 .map(Path::toFile)
                 .filter(f -> f.isDirectory())
                 .map(File::toPath)
                 .map(Path::toString)
-                .parallel()
-                .forEach(d -> result.merge(process(d)));
-            return result;
+                .map(d -> processAsync(d, space))
+                .collect(Collectors.toList()));
         } catch (IOException e) {
             log.error("error processing directory {}: {}", directoryPath, e.getMessage());
             if (log.isTraceEnabled())
                 e.printStackTrace();
-            return new ProcessingResult(RT_DIR_FAILURE);
+            return CompletableFuture.completedFuture(new ProcessingResult(RT_DIR_FAILURE));
         }
     }
 
+    static CompletableFuture<ProcessingResult> join(List<CompletableFuture<ProcessingResult>> futures) {
+        return CompletableFuture
+            .allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(v -> futures
+                .stream()
+                .map(CompletableFuture::join)
+                .reduce(new ProcessingResult(), ProcessingResult::merge));
+    }
+
 }
@@ -0,0 +1,269 @@
+package ws.slink.parser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ws.slink.atlassian.ConcurrencyLimiter;
+import ws.slink.atlassian.RetryPolicy;
+import ws.slink.atlassian.SpaceIndex;
+import ws.slink.config.AppConfig;
+import ws.slink.model.Document;
+import ws.slink.model.ManifestEntry;
+import ws.slink.model.ProcessingResult;
+import ws.slink.service.DependencyGraph;
+import ws.slink.service.ManifestService;
+import ws.slink.service.TrackingService;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static ws.slink.model.ProcessingResult.ResultType.*;
+
+/**
+ * watches documentation directory (recursively) for changes and re-publishes (or prints) changed documents;
+ *
+ * file system events are coalesced per file and debounced: batch of changes is processed after a quiet period
+ * (see a2c.watch-debounce), but not later than a second after first change, so that bursts of saves (editors
+ * writing temporary files, 'save all') lead to a single processing of each document; documents including changed
+ * files (see {@link DependencyGraph}) are processed as well, pages of deleted documents (including documents of
+ * directories removed or moved out of watched tree) are removed by the same rules as stale pages
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class DirectoryWatcher {
+
+    private static final long MAX_DELAY = 1000;
+
+    private final AppConfig appConfig;
+    private final DirectoryProcessor directoryProcessor;
+    private final FileProcessor fileProcessor;
+    private final TrackingService trackingService;
+    private final ManifestService manifestService;
+    private final DependencyGraph dependencyGraph;
+    private final SpaceIndex spaceIndex;
+    private final RetryPolicy retryPolicy;
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * watches directory until current thread is interrupted
+     *
+     * @param directoryPath
+     * @param space
+     */
+    public void watch(String directoryPath, String space) {
+        Path root = Paths.get(directoryPath).toAbsolutePath().normalize();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> keys = new HashMap<>();
+            register(watchService, keys, root);
+            log.info("watching {} for changes", root);
+
+            Set<Path> pending = new LinkedHashSet<>();
+            long firstEvent = 0, lastEvent = 0;
+            while (!keys.isEmpty()) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long wait = Math.min(lastEvent + debounce(), firstEvent + MAX_DELAY) - System.currentTimeMillis();
+                    key = (wait > 0) ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (null == key) {
+                    process(pending, space);
+                    pending.clear();
+                    continue;
+                }
+
+                boolean idle = pending.isEmpty();
+                Path dir = keys.get(key);
+                if (null == dir) {
+                    // key of removed directory, events are queued before it was cancelled
+                    key.pollEvents();
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // events are lost, all the documents are to be processed
+                        log.warn("too many changes in {}, processing all the documents", root);
+                        pending.addAll(documents(root));
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (isHidden(root, path))
+                        continue;
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                        // files could be created before directory is registered
+                        register(watchService, keys, path);
+                        pending.addAll(documents(path));
+                    } else if (event.kind() == ENTRY_DELETE && keys.containsValue(path)) {
+                        // watched directory is removed or moved out of watched tree
+                        pending.addAll(unregister(keys, path, space));
+                    } else {
+                        pending.add(path);
+                    }
+                }
+                if (!key.reset()) {
+                    // directory is not accessible anymore (its deletion can be reported to parent directory later)
+                    pending.addAll(unregister(keys, dir, space));
+                }
+
+                if (pending.isEmpty())
+                    continue;
+                lastEvent = System.currentTimeMillis();
+                if (idle)
+                    firstEvent = lastEvent;
+            }
+            log.warn("{} is not accessible anymore, stopping watch", root);
+        } catch (IOException e) {
+            log.error("error watching {}: {}", root, e.getMessage());
+            if (log.isTraceEnabled())
+                e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(Set<Path> paths, String space) {
+        long started = System.currentTimeMillis();
+
+        List<String> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        paths.stream().filter(this::isDocument).forEach(path -> {
+            if (Files.isRegularFile(path))
+                changed.add(path.toString());
+            else if (!Files.exists(path))
+                deleted.add(path.toString());
+        });
+        Set<String> documents = new LinkedHashSet<>(changed);
+        documents.addAll(dependencyGraph.dependents(paths.stream().map(Path::toString).collect(Collectors.toList())));
+        documents.removeAll(deleted);
+        if (documents.isEmpty() && deleted.isEmpty())
+            return;
+        log.info("processing changes: {} document(s) changed, {} removed", documents.size(), deleted.size());
+
+        // pages could be changed on server since last batch, so they are requested one by one
+        spaceIndex.clear();
+        retryPolicy.reset();
+        concurrencyLimiter.reset();
+
+        // documents are registered again (with possibly changed titles) during processing, titles of deleted
+        // documents are taken before that, so that their titles can be registered by other (e.g. renamed) documents
+        Map<String, Optional<String>> titles = new LinkedHashMap<>();
+        deleted.forEach(f -> titles.put(f, trackingService.unregister(f)
+            .map(Document::title)
+            .map(Optional::of)
+            .orElseGet(() -> manifestService.get(space, f).map(ManifestEntry::title))));
+        documents.forEach(trackingService::unregister);
+        ProcessingResult result = directoryProcessor.processFiles(documents, space).join();
+
+        // deleted documents are processed after changed ones, so that pages of renamed documents are kept
+        titles.forEach((f, title) -> {
+            if (title.isPresent())
+                result.merge(fileProcessor.remove(f, title.get(), space));
+            else
+                log.warn("could not find title of removed document {}", f);
+            dependencyGraph.remove(f);
+        });
+
+        manifestService.save();
+        dependencyGraph.save();
+        log.info("changes processed in {} ms: published {}, updated {}, removed {}, unchanged {}, failed {}",
+            System.currentTimeMillis() - started,
+            result.get(RT_PUB_SUCCESS).get(),
+            result.get(RT_UPD_SUCCESS).get(),
+            result.get(RT_DEL_SUCCESS).get(),
+            result.get(RT_SKP_UNCHANGED).get(),
+            result.get(RT_FILE_FAILURE).get() + result.get(RT_PUB_FAILURE).get()
+                + result.get(RT_UPD_FAILURE).get() + result.get(RT_DEL_FAILURE).get());
+    }
+
+    // registers directory and all its subdirectories (watch service is not recursive)
+    private void register(WatchService watchService, Map<WatchKey, Path> keys, Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.filter(Files::isDirectory).filter(d -> !isHidden(dir, d)).collect(Collectors.toList()))
+                keys.put(path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), path);
+        }
+    }
+
+    // cancels watch keys of directory and its subdirectories (keys of directories moved out of watched tree stay
+    // valid and would report changes with stale paths); documents known to be read or published from directory are
+    // returned, so that they are processed as deleted
+    private List<Path> unregister(Map<WatchKey, Path> keys, Path dir, String space) {
+        Iterator<Map.Entry<WatchKey, Path>> iterator = keys.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = iterator.next();
+            if (entry.getValue().startsWith(dir)) {
+                entry.getKey().cancel();
+                iterator.remove();
+            }
+        }
+        Set<Path> documents = new LinkedHashSet<>();
+        trackingService.documents()
+            .stream()
+            .map(Document::inputFilename)
+            .filter(StringUtils::isNotBlank)
+            .map(f -> Paths.get(f).toAbsolutePath().normalize())
+            .filter(p -> p.startsWith(dir))
+            .forEach(documents::add);
+        manifestService.entries(space, dir.toString())
+            .stream()
+            .map(e -> Paths.get(e.path()))
+            .forEach(documents::add);
+        log.debug("directory {} removed, {} document(s) to be removed", dir, documents.size());
+        return new ArrayList<>(documents);
+    }
+
+    private List<Path> documents(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths
+                .filter(Files::isRegularFile)
+                .filter(this::isDocument)
+                .filter(p -> !isHidden(dir, p))
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("error listing {}: {}", dir, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private boolean isDocument(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".adoc") || name.endsWith(".asciidoc");
+    }
+
+    // hidden files and directories (e.g. '.git', editor swap files) are not watched
+    private boolean isHidden(Path root, Path path) {
+        for (Path name : root.relativize(path))
+            if (name.toString().startsWith("."))
+                return true;
+        return false;
+    }
+
+    private long debounce() {
+        return appConfig.getWatchDebounce();
+    }
+
+}
@@ -0,0 +1,125 @@
+package ws.slink.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ws.slink.model.Document;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * extracts document metadata ('// :DOCUMENT-*:' comments) matching all the keys in a single pass over lines;
+ *
+ * for metadata-only uses (e.g. title of document removed from git repository) header can be read with
+ * {@link #readHeader(BufferedReader)}, which stops at the first non-header line (header consists of blank lines,
+ * comments, document title and attribute entries), so that document body is never read
+ *
+ */
+@Slf4j
+@Component
+public class DocumentHeaderReader {
+
+    @Value("${asciidoc.template.title}")
+    private String titleTemplate;
+
+    @Value("${asciidoc.template.title-old}")
+    private String titleOldTemplate;
+
+    @Value("${asciidoc.template.parent}")
+    private String parentTemplate;
+
+    @Value("${asciidoc.template.hidden}")
+    private String hiddenTemplate;
+
+    @Value("${asciidoc.template.tags}")
+    private String tagsTemplate;
+
+    /**
+     * reads metadata from document header only
+     *
+     * @return document without contents
+     */
+    public Optional<Document> readHeader(BufferedReader reader) {
+        Parser parser = new Parser();
+        try {
+            for (String line = reader.readLine(); null != line && isHeader(line); line = reader.readLine())
+                if (parser.accept(line))
+                    break;
+        } catch (IOException e) {
+            log.error("error reading document header: {}", e.getMessage());
+            return Optional.empty();
+        }
+        return Optional.of(parser.document());
+    }
+
+    /**
+     * reads metadata from all the document lines (first line containing metadata key is taken)
+     *
+     * @return document without contents
+     */
+    public Document read(Iterable<String> lines) {
+        Parser parser = new Parser();
+        for (String line : lines)
+            if (parser.accept(line))
+                break;
+        return parser.document();
+    }
+
+    private boolean isHeader(String line) {
+        return StringUtils.isBlank(line)
+            || line.startsWith("//")
+            || line.startsWith("= ")
+            || line.startsWith(":");
+    }
+
+    private class Parser {
+
+        private String title;
+        private String oldTitle;
+        private String parent;
+        private String hidden;
+        private String tags;
+
+        /**
+         * @return true if all the keys are found
+         */
+        private boolean accept(String line) {
+            if (null == title && line.contains(titleTemplate))
+                title = value(line, titleTemplate);
+            if (null == oldTitle && line.contains(titleOldTemplate))
+                oldTitle = value(line, titleOldTemplate);
+            if (null == parent && line.contains(parentTemplate))
+                parent = value(line, parentTemplate);
+            if (null == hidden && line.startsWith("//") && line.contains(hiddenTemplate))
+                hidden = value(line, hiddenTemplate);
+            if (null == tags && line.contains(tagsTemplate))
+                tags = value(line, tagsTemplate);
+            return null != title && null != oldTitle && null != parent && null != hidden && null != tags;
+        }
+
+        private String value(String line, String key) {
+            return line.replace(key, "").replace("/", "").trim();
+        }
+
+        private Document document() {
+            log.trace("hidden value: '{}'", hidden);
+            return new Document()
+                .title(StringUtils.defaultString(title))
+                .oldTitle(StringUtils.defaultString(oldTitle))
+                .parent(StringUtils.defaultString(parent))
+                .hidden(null != hidden && (StringUtils.isBlank(hidden) || Boolean.parseBoolean(hidden)))
+                .tags(
+                    Arrays.stream(StringUtils.defaultString(tags).split(","))
+                        .filter(StringUtils::isNotBlank)
+                        .map(String::trim)
+                        .collect(Collectors.toList())
+                );
+        }
+    }
+
+}
@@ -5,17 +5,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
-import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.AttributesBuilder;
 import org.asciidoctor.OptionsBuilder;
 import org.asciidoctor.SafeMode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ws.slink.atlassian.Confluence;
+import ws.slink.atlassian.SpaceIndex;
 import ws.slink.config.AppConfig;
 import ws.slink.model.Document;
+import ws.slink.model.ManifestEntry;
+import ws.slink.model.Page;
 import ws.slink.model.ProcessingResult;
-import ws.slink.processor.*;
+import ws.slink.processor.ConfluenceLinkInlineMacroProcessor;
+import ws.slink.processor.IncludeTracker;
+import ws.slink.service.ConversionCache;
+import ws.slink.service.DependencyGraph;
+import ws.slink.service.ManifestService;
+import ws.slink.service.ProcessingExecutors;
 import ws.slink.service.TrackingService;
 
 import javax.annotation.PostConstruct;
@@ -23,10 +31,13 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static ws.slink.model.ProcessingResult.ResultType.*;
@@ -36,24 +47,19 @@ import static ws.slink.model.ProcessingResult.ResultType.*;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class FileProcessor {
 
-    @Value("${asciidoc.template.title}")
-    private String titleTemplate;
-
-    @Value("${asciidoc.template.title-old}")
-    private String titleOldTemplate;
-
-    @Value("${asciidoc.template.parent}")
-    private String parentTemplate;
-
-    @Value("${asciidoc.template.hidden}")
-    private String hiddenTemplate;
-
-    @Value("${asciidoc.template.tags}")
-    private String tagsTemplate;
-
     private final AppConfig appConfig;
     private final Confluence confluence;
+    private final SpaceIndex spaceIndex;
     private final TrackingService trackingService;
+    private final AsciidoctorPool asciidoctorPool;
+    private final ProcessingExecutors executors;
+    private final DocumentHeaderReader headerReader;
+    private final ManifestService manifestService;
+    private final ConversionCache conversionCache;
+    private final DependencyGraph dependencyGraph;
+
+    @Value("${confluence.protected.label:}")
+    private List<String> protectedLabels;
 
 
     @SuppressWarnings("unchecked")
@@ -80,50 +86,47 @@ public class FileProcessor {
         disableAccessWarnings();
     }
 
+    public ProcessingResult process(String inputFilename) {
+        return process(inputFilename, appConfig.getSpace());
+    }
+    public ProcessingResult process(String inputFilename, String space) {
+        return processAsync(inputFilename, space).join();
+    }
+
     /**
-     * we need to initialize AsciiDoctor for each document being processed, as we need to know document's space
-     * to create correct inter-document links
+     * reads and converts document on (CPU-bound) convert executor, then publishes (or prints) it
+     * on (I/O-bound) publish executor
      *
-     * @param document
+     * @param inputFilename
+     * @param space
      */
-    private Asciidoctor initializeAsciidoctor(Document document) {
-
-        Asciidoctor asciidoctor = Asciidoctor.Factory.create();
-
-        // register preprocessors
-        asciidoctor.javaExtensionRegistry().preprocessor(CodeBlockPreProcessor.class);
-        asciidoctor.javaExtensionRegistry().preprocessor(ConfluenceLinkMacroPreProcessor.class);
-        asciidoctor.javaExtensionRegistry().preprocessor(TreeMacroPreProcessor.class);
-        asciidoctor.javaExtensionRegistry().preprocessor(ChildrenMacroPreProcessor.class);
-
-        // register block processors
-        asciidoctor.javaExtensionRegistry().block(CodeBlockProcessor.class);
-
-        // register (inline) macro processors
-        asciidoctor.javaExtensionRegistry().inlineMacro(new ConfluenceLinkInlineMacroProcessor(document.space()));
-        asciidoctor.javaExtensionRegistry().blockMacro(TreeMacroProcessor.class);
-        asciidoctor.javaExtensionRegistry().blockMacro(ChildrenMacroProcessor.class);
-
-        // register postprocessors
-        asciidoctor.javaExtensionRegistry().postprocessor(CodeBlockPostProcessor.class);
-        asciidoctor.javaExtensionRegistry().postprocessor(NoticeBlockPostProcessor.class);
-        asciidoctor.javaExtensionRegistry().postprocessor(TOCBlockPostProcessor.class);
-        asciidoctor.javaExtensionRegistry().postprocessor(ImageBlockPostProcessor.class);
-        asciidoctor.javaExtensionRegistry().postprocessor(LatexBlockPostProcessor.class);
-
-        return asciidoctor;
+    public CompletableFuture<ProcessingResult> processAsync(String inputFilename, String space) {
+        if (StringUtils.isBlank(inputFilename))
+            return CompletableFuture.completedFuture(new ProcessingResult());
+        return CompletableFuture
+            .supplyAsync(() -> read(inputFilename, space, false).flatMap(d -> {
+                trackingService.register(d);
+                return convert(d).map(cd -> new ConvertedDocument(d, cd));
+            }), executors.convert())
+            .thenApplyAsync(cdOpt -> cdOpt
+                .map(cd -> publishOrPrint(cd.document, cd.content))
+                // document could not be read or converted (error is logged)
+                .orElseGet(() -> new ProcessingResult(RT_FILE_FAILURE)), executors.publish())
+            .exceptionally(e -> {
+                log.error("error processing file {}: {}", inputFilename, e.getMessage());
+                if (log.isTraceEnabled())
+                    e.printStackTrace();
+                return new ProcessingResult(RT_FILE_FAILURE);
+            });
     }
 
-    public ProcessingResult process(String inputFilename) {
-        ProcessingResult result = new ProcessingResult();
-        if (StringUtils.isNotBlank(inputFilename))
-            read(inputFilename).ifPresent(d -> convert(d).ifPresent(cd -> result.merge(publishOrPrint(d, cd))));
-        return result;
-    }
     public Optional<Document> read(String inputFilename) {
         return read(inputFilename, false);
     }
     public Optional<Document> read(String inputFilename, boolean trackDuplicates) {
+        return read(inputFilename, appConfig.getSpace(), trackDuplicates);
+    }
+    public Optional<Document> read(String inputFilename, String space, boolean trackDuplicates) {
         List<String> lines;
         try {
             lines = FileUtils.readLines(new File(inputFilename), "utf-8");
@@ -132,21 +135,10 @@ public class FileProcessor {
             return Optional.empty();
         }
         Document document =
-            new Document()
-                .space(appConfig.getSpace()/*getDocumentParam(lines, spaceKeyTemplate, appConfig.getSpace())*/)
-                .title(getDocumentParam(lines, titleTemplate, null))
-                .oldTitle(getDocumentParam(lines, titleOldTemplate, null))
-                .parent(getDocumentParam(lines, parentTemplate, null))
-                .hidden(getDocumentBooleanParam(lines, hiddenTemplate))
+            headerReader.read(lines)
+                .space(space)
                 .inputFilename(inputFilename)
-                .contents(lines.stream().collect(Collectors.joining("\n")))
-                .tags(
-                    Arrays.asList(getDocumentParam(lines, tagsTemplate, null).split(","))
-                    .stream()
-                    .filter(s -> StringUtils.isNotBlank(s))
-                    .map(s -> s.trim())
-                    .collect(Collectors.toList())
-        );
+                .contents(String.join("\n", lines));
 
         if (trackDuplicates) {
             if (trackingService.contains(document.title()))
@@ -162,23 +154,52 @@ public class FileProcessor {
 
         return Optional.of(document);
     }
+    /**
+     * converts document contents already loaded by {@link #read(String)}; base directory is set to
+     * source file location, so that relative includes and images are resolved the same way as for
+     * file conversion
+     *
+     * @param document
+     */
     public Optional<String> convert(Document document) {
-        Asciidoctor asciidoctor = initializeAsciidoctor(document);
+        Optional<String> cached = conversionCache.get(document);
+        if (cached.isPresent()) {
+            log.trace("using cached conversion of {}", document.inputFilename());
+            return cached;
+        }
+        File inputFile = new File(document.inputFilename()).getAbsoluteFile();
+        AttributesBuilder attributes = AttributesBuilder.attributes()
+            .attribute("docfile", inputFile.getPath())
+            .attribute("docdir", inputFile.getParent())
+            .attribute("docname", FilenameUtils.getBaseName(inputFile.getName()));
+        if (StringUtils.isNotBlank(document.space()))
+            attributes.attribute(ConfluenceLinkInlineMacroProcessor.SPACE_ATTRIBUTE, document.space());
         try {
-            String result = asciidoctor
-            .convertFile(
-                new File(document.inputFilename()),
-                OptionsBuilder.options()
-                    .backend("xhtml5")
-                    .toFile(false)
-                    .safe(SafeMode.UNSAFE)
-            );
+            // included files are tracked on conversion thread
+            IncludeTracker tracker = IncludeTracker.start();
+            String result;
+            try {
+                result = asciidoctorPool.execute(asciidoctor -> asciidoctor
+                    .convert(
+                        document.contents(),
+                        OptionsBuilder.options()
+                            .backend(appConfig.getBackend())
+                            .toFile(false)
+                            .safe(SafeMode.UNSAFE)
+                            .baseDir(inputFile.getParentFile())
+                            .attributes(attributes)
+                    )
+                );
+            } finally {
+                IncludeTracker.stop();
+            }
+            dependencyGraph.update(document.inputFilename(), tracker.includes());
+            if (null != result && tracker.complete())
+                conversionCache.put(document, tracker.includes(), result);
             return Optional.ofNullable(result);
         } catch (Exception e) {
             log.warn("error converting file: {}", e.getMessage());
             return Optional.empty();
-        } finally {
-            asciidoctor.shutdown();
         }
     }
 
@@ -193,28 +214,13 @@ public class FileProcessor {
                     return new ProcessingResult(RT_PUB_FAILURE);
                 } else {
 
-                    Optional<String> pageIdOpt = Optional.empty();
-                    if (StringUtils.isNotBlank(document.oldTitle())) {
-                        log.trace("searching for page with old title: '{}'", document.oldTitle());
-                        pageIdOpt = confluence.getPageId(document.space(), document.oldTitle());
-                    }
-
-                    if (pageIdOpt.isPresent()) {
-                        // update old-titled document
-                        log.trace("found page (with old title) '{}'", document.oldTitle());
-                        return updateDocument(pageIdOpt.get(), document, convertedDocument);
+                    Optional<Page> pageOpt = findPage(document);
+                    if (pageOpt.isPresent()) {
+                        return updateDocument(pageOpt.get(), document, convertedDocument);
                     } else {
-                        log.trace("searching for page with title: '{}'", document.title());
-                        pageIdOpt = confluence.getPageId(document.space(), document.title());
-                        if (pageIdOpt.isPresent()) {
-                            // update new-tiled document
-                            log.trace("found page (with 'new' title)'{}'", document.title());
-                            return updateDocument(pageIdOpt.get(), document, convertedDocument);
-                        } else {
-                            // publish document
-                            log.trace("not found page with title '{}'; publishing new one", document.title());
-                            return publishDocument(document, convertedDocument);
-                        }
+                        // publish document
+                        log.trace("not found page with title '{}'; publishing new one", document.title());
+                        return publishDocument(document, convertedDocument);
                     }
                 }
             }
@@ -225,10 +231,90 @@ public class FileProcessor {
         }
     }
 
-    private ProcessingResult updateDocument(String pageId, Document document, String convertedDocument) {
+    /**
+     * removes page of deleted document with given title by the same rules as stale pages removal: page is kept,
+     * if it is labeled with protected label or its title is used by other document
+     *
+     * @param inputFilename
+     * @param title
+     * @param space
+     */
+    public ProcessingResult remove(String inputFilename, String title, String space) {
+        if (!confluence.canPublish())
+            return new ProcessingResult();
+
+        Optional<ManifestEntry> entryOpt = manifestService.get(space, inputFilename);
+        if (trackingService.titles().contains(title)) {
+            log.info("title '{}' of removed document {} is used by other document, keeping page", title, inputFilename);
+            entryOpt.ifPresent(manifestService::remove);
+            return new ProcessingResult();
+        }
+
+        Optional<Page> pageOpt = entryOpt
+            .flatMap(entry -> spaceIndex.getPageById(space, entry.pageId()))
+            .map(Optional::of)
+            .orElseGet(() -> spaceIndex.getPage(space, title));
+        if (!pageOpt.isPresent()) {
+            log.trace("no page found for removed document {}", inputFilename);
+            entryOpt.ifPresent(manifestService::remove);
+            return new ProcessingResult();
+        }
+        Page page = pageOpt.get();
+        if (page.labels().stream().anyMatch(protectedLabels::contains)) {
+            log.info("Skipping removal of '{}' ({})", page.title(), page.id());
+            return new ProcessingResult();
+        }
+        log.trace("removing page #{} of removed document {}", page.id(), inputFilename);
+        if (confluence.deletePage(page.id(), page.title()) > 0) {
+            manifestService.removePage(page.id());
+            spaceIndex.remove(page.id());
+            return new ProcessingResult(RT_DEL_SUCCESS);
+        } else {
+            return new ProcessingResult(RT_DEL_FAILURE);
+        }
+    }
+
+    /**
+     * looks up published page by page id stored in manifest first (a single request, no title search);
+     * if manifest entry is missing or stale, falls back to search by old title and by title
+     *
+     * @param document
+     */
+    private Optional<Page> findPage(Document document) {
+        Optional<ManifestEntry> entryOpt = manifestService.get(document.space(), document.inputFilename());
+        if (entryOpt.isPresent()) {
+            Optional<Page> pageOpt = spaceIndex.getPageById(document.space(), entryOpt.get().pageId());
+            if (pageOpt.isPresent()) {
+                log.trace("found page #{} from manifest", pageOpt.get().id());
+                if (!pageOpt.get().title().equals(document.title()))
+                    log.info("document '{}' renamed to '{}'", pageOpt.get().title(), document.title());
+                return pageOpt;
+            }
+            log.trace("stale manifest entry: {}", entryOpt.get());
+            manifestService.remove(entryOpt.get());
+        }
+
+        Optional<String> pageIdOpt = Optional.empty();
+        if (StringUtils.isNotBlank(document.oldTitle())) {
+            log.trace("searching for page with old title: '{}'", document.oldTitle());
+            pageIdOpt = spaceIndex.getPageId(document.space(), document.oldTitle());
+            pageIdOpt.ifPresent(id -> log.trace("found page (with old title) '{}'", document.oldTitle()));
+        }
+        if (!pageIdOpt.isPresent()) {
+            log.trace("searching for page with title: '{}'", document.title());
+            pageIdOpt = spaceIndex.getPageId(document.space(), document.title());
+            pageIdOpt.ifPresent(id -> log.trace("found page (with 'new' title)'{}'", document.title()));
+        }
+        return pageIdOpt.flatMap(id -> spaceIndex.getPageById(document.space(), id));
+    }
+
+    private ProcessingResult updateDocument(Page page, Document document, String convertedDocument) {
+        String pageId = page.id();
         // if found, update page
         if (document.hidden()) {
             if (confluence.deletePage(pageId, document.title()) > 0) {
+                manifestService.removePage(pageId);
+                spaceIndex.remove(pageId);
                 log.info("document '{}' removed from server", document.title());
                 return new ProcessingResult(RT_DEL_SUCCESS);
             } else {
@@ -236,7 +322,17 @@ public class FileProcessor {
                 return new ProcessingResult(RT_DEL_FAILURE);
             }
         } else {
-            if (confluence.updatePage(pageId, document.title(), "current", convertedDocument)) {
+            String hash = ManifestService.hash(document.title(), document.tags(), convertedDocument);
+            if (page.unchanged(hash)) {
+                // no update, label sync and version removal needed
+                log.info("document '{}' is not changed, skip updating", document.title());
+                manifestService.put(document.space(), document.inputFilename(), pageId, page.version(), document.title(), hash);
+                return new ProcessingResult(RT_SKP_UNCHANGED);
+            }
+            Optional<Integer> updatedVersion = confluence.updatePage(pageId, page.version(), document.title(), "current", convertedDocument);
+            if (updatedVersion.isPresent()) {
+                // version actually set on server (previous version could be removed from history)
+                int version = updatedVersion.get();
                 log.info(
                     String.format(
                         "Updated document in confluence: %s/display/%s/%s"
@@ -246,16 +342,18 @@ public class FileProcessor {
                     )
                 );
 
-                // remove stale tags from confluence document
-                Collection<String> serverTags = confluence.getTags(pageId);
-                serverTags.removeAll(document.tags());
-                confluence.removeTags(pageId, serverTags);
-                log.trace("removed page labels: {}", serverTags);
+                syncLabels(page, document);
 
-                // add new tags to confluence document
-                document.tags().removeAll(serverTags);
-                confluence.tagPage(pageId, document.tags());
-                log.trace("added page labels: {}", document.tags());
+                boolean hashStored = confluence.setContentHash(pageId, version, hash, page.hashPropertyVersion());
+                manifestService.put(document.space(), document.inputFilename(), pageId, version, document.title(), hash);
+                spaceIndex.put(document.space(), new Page()
+                    .id(pageId)
+                    .title(document.title())
+                    .version(version)
+                    .labels(labels(document))
+                    .hash(hashStored ? hash : page.hash())
+                    .hashVersion(hashStored ? version : page.hashVersion())
+                    .hashPropertyVersion(hashStored ? page.hashPropertyVersion() + 1 : page.hashPropertyVersion()));
 
                 return new ProcessingResult(RT_UPD_SUCCESS);
             } else {
@@ -273,8 +371,24 @@ public class FileProcessor {
     }
     private ProcessingResult publishDocument(Document document, String convertedDocument) {
         if (!document.hidden()) {
-            // publish page
-            if (confluence.publishPage(document.space(), document.title(), document.parent(), "current", convertedDocument)) {
+            // publish page (parent page id is taken from manifest, if known)
+            String parentId = null;
+            if (StringUtils.isNotBlank(document.parent()))
+                parentId = manifestService.findPageId(document.space(), document.parent())
+                    .orElseGet(() -> spaceIndex.getPageId(document.space(), document.parent()).orElse(null));
+            Optional<String> pageIdOpt = confluence.createPage(document.space(), document.title(), parentId, "current", convertedDocument);
+            if (pageIdOpt.isPresent()) {
+                String hash = ManifestService.hash(document.title(), document.tags(), convertedDocument);
+                boolean hashStored = confluence.setContentHash(pageIdOpt.get(), 1, hash, 0);
+                manifestService.put(document.space(), document.inputFilename(), pageIdOpt.get(), 1, document.title(), hash);
+                spaceIndex.put(document.space(), new Page()
+                    .id(pageIdOpt.get())
+                    .title(document.title())
+                    .version(1)
+                    .labels(labels(document))
+                    .hash(hashStored ? hash : null)
+                    .hashVersion(hashStored ? 1 : 0)
+                    .hashPropertyVersion(hashStored ? 1 : 0));
                 log.info(
                     String.format(
                         "Published document to confluence: %s/display/%s/%s"
@@ -283,7 +397,7 @@ public class FileProcessor {
                         , document.title().replaceAll(" ", "+")
                     )
                 );
-                if (confluence.tagPage(document.space(), document.title(), document.tags())) {
+                if (confluence.tagPage(pageIdOpt.get(), document.tags())) {
                     log.info(
                         String.format(
                             "Labeled document with tags: %s"
@@ -308,33 +422,49 @@ public class FileProcessor {
             return new ProcessingResult(RT_SKP_HIDDEN);
         }
     }
-    private String getDocumentParam(List<String> lines, String key, String override) {
-        return (StringUtils.isNotBlank(override))
-            ? override
-            : lines
+    /**
+     * synchronizes page labels (known from page lookup) with document tags: only stale labels are removed and
+     * only missing labels are added, removal and addition requests are issued concurrently; no requests are issued
+     * if labels are not changed
+     */
+    private void syncLabels(Page page, Document document) {
+        // confluence labels are case-insensitive
+        Map<String, String> current = page.labels()
             .stream()
-            .filter(s -> s.contains(key))
-            .findFirst()
-            .orElse("")
-            .replace(key, "")
-            .replace("/", "")
-            .trim()
-        ;
-    }
-    private boolean getDocumentBooleanParam(List<String> lines, String key) {
-        Optional<String> argument =
-            lines.stream()
-                .filter(s -> s.startsWith("//") && s.contains(key))
-                .findFirst();
-        if (!argument.isPresent()) {
-            return false;
-        } else {
-            String value = argument.get()
-                .replaceAll("/", "")
-                .replace(key, "")
-                .trim();
-            log.trace("hidden value: '{}'", value);
-            return (StringUtils.isBlank(value)) ? true : Boolean.parseBoolean(value);
+            .collect(Collectors.toMap(l -> l.toLowerCase(Locale.ROOT), l -> l, (a, b) -> a, LinkedHashMap::new));
+        Map<String, String> required = labels(document)
+            .stream()
+            .collect(Collectors.toMap(l -> l.toLowerCase(Locale.ROOT), l -> l, (a, b) -> a, LinkedHashMap::new));
+        List<String> stale = current.entrySet()
+            .stream()
+            .filter(e -> !required.containsKey(e.getKey()))
+            .map(Map.Entry::getValue)
+            .collect(Collectors.toList());
+        List<String> missing = required.entrySet()
+            .stream()
+            .filter(e -> !current.containsKey(e.getKey()))
+            .map(Map.Entry::getValue)
+            .collect(Collectors.toList());
+        if (stale.isEmpty() && missing.isEmpty()) {
+            log.trace("labels of page #{} are not changed", page.id());
+            return;
         }
+
+        List<CompletableFuture<Boolean>> requests = new ArrayList<>();
+        stale.forEach(label -> requests.add(confluence.removeTagAsync(page.id(), label)));
+        if (!missing.isEmpty())
+            requests.add(confluence.tagPageAsync(page.id(), missing));
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+        log.trace("page #{} labels removed: {}, added: {}", page.id(), stale, missing);
+    }
+
+    // page labels as set by tagPage
+    private List<String> labels(Document document) {
+        return document.tags().stream().map(tag -> tag.replaceAll(" ", "_")).collect(Collectors.toList());
+    }
+    @RequiredArgsConstructor
+    private static class ConvertedDocument {
+        private final Document document;
+        private final String content;
     }
 }
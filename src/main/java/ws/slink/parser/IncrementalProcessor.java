@@ -0,0 +1,125 @@
+package ws.slink.parser;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ws.slink.atlassian.Confluence;
+import ws.slink.config.AppConfig;
+import ws.slink.model.ChangeSet;
+import ws.slink.model.Document;
+import ws.slink.model.ManifestEntry;
+import ws.slink.model.ProcessingResult;
+import ws.slink.service.DependencyGraph;
+import ws.slink.service.GitService;
+import ws.slink.service.ManifestService;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static ws.slink.model.ProcessingResult.ResultType.RT_DEL_FAILURE;
+
+/**
+ * processes only documents changed in git repository since given (--since) or last published revision:
+ * added, modified and renamed documents are converted and published, pages of deleted documents are removed
+ * from confluence space (instead of scanning whole space for stale pages);
+ *
+ * documents including changed files (see {@link DependencyGraph}) are converted and published as well;
+ *
+ * changed documents are processed level by level (see {@link DirectoryProcessor#processFiles(Collection, String)}),
+ * so that higher-level (parent) pages are published before their children, as with full directory processing
+ *
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class IncrementalProcessor {
+
+    private final AppConfig appConfig;
+    private final GitService gitService;
+    private final FileProcessor fileProcessor;
+    private final DirectoryProcessor directoryProcessor;
+    private final DocumentHeaderReader headerReader;
+    private final ManifestService manifestService;
+    private final DependencyGraph dependencyGraph;
+    private final Confluence confluence;
+
+    /**
+     * @return processing result or empty, if directory should be processed completely
+     *         (not a git repository, no base revision known, git error)
+     */
+    public Optional<ProcessingResult> process(String directoryPath, String space) {
+        if (!gitService.head(directoryPath).isPresent()) {
+            log.warn("{} is not a git repository, processing all the documents", directoryPath);
+            return Optional.empty();
+        }
+        String since = StringUtils.isNotBlank(appConfig.getSince())
+            ? appConfig.getSince()
+            : manifestService.revision(space, directoryPath).orElse(null);
+        if (null == since) {
+            log.info("no published revision recorded for {}, processing all the documents", directoryPath);
+            return Optional.empty();
+        }
+        Optional<ChangeSet> changeSetOpt = gitService.changes(directoryPath, since, "HEAD");
+        if (!changeSetOpt.isPresent()) {
+            log.warn("could not get changes of {} since {}, processing all the documents", directoryPath, since);
+            return Optional.empty();
+        }
+
+        ChangeSet changeSet = changeSetOpt.get();
+
+        // documents including changed files should be converted again
+        Set<String> documents = new LinkedHashSet<>(changeSet.changed());
+        Set<String> dependents = dependencyGraph.dependents(changeSet.files());
+        dependents.removeAll(changeSet.deleted());
+        dependents.removeAll(documents);
+        documents.addAll(dependents);
+        log.info("processing changes of {} since {}: {}, dependent: {}", directoryPath, since, changeSet, dependents.size());
+
+        // renamed documents keep their pages
+        changeSet.renamed().forEach((from, to) -> {
+            manifestService.move(space, from, to);
+            dependencyGraph.remove(from);
+        });
+        changeSet.deleted().forEach(dependencyGraph::remove);
+
+        ProcessingResult result = directoryProcessor.processFiles(documents, space).join();
+        changeSet.deleted().forEach(f -> result.merge(removeDeleted(directoryPath, since, f, space)));
+        return Optional.of(result);
+    }
+
+    /**
+     * records current revision of directory as published one
+     */
+    public void record(String directoryPath, String space) {
+        gitService.head(directoryPath).ifPresent(head -> {
+            log.debug("recording published revision of {}: {}", directoryPath, head);
+            manifestService.revision(space, directoryPath, head);
+        });
+    }
+
+    private ProcessingResult removeDeleted(String directoryPath, String since, String inputFilename, String space) {
+        if (!confluence.canPublish())
+            return new ProcessingResult();
+
+        // title is taken from manifest or from document's last published version
+        Optional<ManifestEntry> entryOpt = manifestService.get(space, inputFilename);
+        String title = entryOpt.map(ManifestEntry::title).orElseGet(() -> {
+            Path base = Paths.get(directoryPath).toAbsolutePath().normalize();
+            return gitService.show(directoryPath, since, base.relativize(Paths.get(inputFilename)).toString(), headerReader::readHeader)
+                .map(Document::title)
+                .orElse("");
+        });
+        if (StringUtils.isBlank(title)) {
+            log.warn("could not find title of removed document {}", inputFilename);
+            return new ProcessingResult(RT_DEL_FAILURE);
+        }
+        return fileProcessor.remove(inputFilename, title, space);
+    }
+
+}
@@ -9,21 +9,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ws.slink.atlassian.Confluence;
+import ws.slink.atlassian.ConcurrencyLimiter;
+import ws.slink.atlassian.ConfluenceConnector;
+import ws.slink.atlassian.RetryPolicy;
+import ws.slink.atlassian.SpaceIndex;
 import ws.slink.config.AppConfig;
-import ws.slink.model.Document;
 import ws.slink.model.Page;
 import ws.slink.model.ProcessingResult;
+import ws.slink.service.ConversionCache;
+import ws.slink.service.DependencyGraph;
+import ws.slink.service.IncludeCache;
+import ws.slink.service.ManifestService;
 import ws.slink.service.TrackingService;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IntSummaryStatistics;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static ws.slink.model.ProcessingResult.ResultType.*;
@@ -35,9 +40,21 @@ public class Processor {
 
     private final @NonNull AppConfig appConfig;
     private final @NonNull DirectoryProcessor directoryProcessor;
+    private final @NonNull IncrementalProcessor incrementalProcessor;
     private final @NonNull FileProcessor fileProcessor;
     private final @NonNull Confluence confluence;
+    private final @NonNull ConfluenceConnector connector;
+    private final @NonNull RetryPolicy retryPolicy;
+    private final @NonNull ConcurrencyLimiter concurrencyLimiter;
+    private final @NonNull SpaceIndex spaceIndex;
     private final @NonNull TrackingService trackingService;
+    private final @NonNull ManifestService manifestService;
+    private final @NonNull ConversionCache conversionCache;
+    private final @NonNull DependencyGraph dependencyGraph;
+    private final @NonNull IncludeCache includeCache;
+
+    // number of concurrency limit changes printed in report
+    private static final int LIMIT_HISTORY_SIZE = 40;
 
     @Value("${confluence.protected.label:}")
     private List<String> protectedLabels;
@@ -57,16 +74,90 @@ public class Processor {
         long timeB = Instant.now().toEpochMilli();
 
         // process documentation sources
-        ProcessingResult result = new ProcessingResult();
-        if (StringUtils.isNotBlank(appConfig.getDir())) {
-            result.merge(directoryProcessor.process(appConfig.getDir()));
-            result.merge(removeStaleArticles(appConfig.getDir()));
-        }
+        ProcessingResult result;
+        if (StringUtils.isNotBlank(appConfig.getDir()))
+            result = process(Collections.singletonList(appConfig.getDir()), Collections.emptyList(), appConfig.getSpace());
         else if (StringUtils.isNotBlank(appConfig.getInput()))
-            result.merge(fileProcessor.process(appConfig.getInput()));
+            result = process(Collections.emptyList(), Collections.singletonList(appConfig.getInput()), appConfig.getSpace());
+        else
+            result = new ProcessingResult();
 
         long timeC = Instant.now().toEpochMilli();
 
+        return report(result, timeA, timeB, timeC);
+    }
+
+    /**
+     * processes given directories and files as a single run; if at least one directory is processed completely,
+     * stale articles are removed from confluence space after publishing; in incremental mode directories are
+     * processed by {@link IncrementalProcessor}, if possible; published git revision of directories is recorded
+     * after successful run
+     *
+     * @param dirs
+     * @param files
+     * @param space
+     */
+    public ProcessingResult process(Collection<String> dirs, Collection<String> files, String space) {
+        return process(dirs, files, space, false);
+    }
+
+    /**
+     * processes given directories and files as a single run (see {@link #process(Collection, Collection, String)});
+     * if 'scoped' is set, only pages published from processed directories (as recorded in manifest) are treated as
+     * stale, so that pages published from elsewhere (e.g. by other jobs) are kept in confluence space
+     *
+     * @param dirs
+     * @param files
+     * @param space
+     * @param scoped
+     */
+    public ProcessingResult process(Collection<String> dirs, Collection<String> files, String space, boolean scoped) {
+        trackingService.reset();
+        spaceIndex.clear();
+        retryPolicy.reset();
+        concurrencyLimiter.reset();
+        ProcessingResult result = new ProcessingResult();
+        int includeHits = includeCache.hits(), includeMisses = includeCache.misses();
+        int requests = connector.requests(), failures = connector.failures(), retries = retryPolicy.retries();
+        long requestTime = connector.time();
+        boolean incremental = appConfig.isIncremental() || StringUtils.isNotBlank(appConfig.getSince());
+        boolean complete = false;
+        for (String d : dirs) {
+            Optional<ProcessingResult> incrementalResult = incremental
+                ? incrementalProcessor.process(d, space)
+                : Optional.empty();
+            if (incrementalResult.isPresent()) {
+                result.merge(incrementalResult.get());
+            } else {
+                // whole directory is processed, so pages are looked up in space snapshots
+                spaceIndex.enable();
+                result.merge(directoryProcessor.process(d, space));
+                complete = true;
+            }
+        }
+        result.merge(DirectoryProcessor.join(files
+            .stream()
+            .map(f -> fileProcessor.processAsync(f, space))
+            .collect(Collectors.toList())).join());
+        if (complete)
+            result.merge(removeStaleArticles(space, scoped ? dirs : null));
+        if (confluence.canPublish() && !result.hasFailures())
+            dirs.forEach(d -> incrementalProcessor.record(d, space));
+        manifestService.save();
+        dependencyGraph.save();
+        conversionCache.evict();
+        result.add(RT_INC_HIT, includeCache.hits() - includeHits);
+        result.add(RT_INC_MISS, includeCache.misses() - includeMisses);
+        result.add(RT_HTTP_REQUEST, connector.requests() - requests);
+        result.add(RT_HTTP_FAILURE, connector.failures() - failures);
+        result.add(RT_HTTP_RETRY, retryPolicy.retries() - retries);
+        result.add(RT_HTTP_TIME, (int) (connector.time() - requestTime));
+        if (connector.requests() > 0)
+            log.info("confluence server: {}", connector.stats());
+        return result;
+    }
+
+    public String report(ProcessingResult result, long timeA, long timeB, long timeC) {
         return new StringBuilder()
             .append("-------------------------------------------------------------").append("\n")
             .append("total time taken   : " + DurationFormatUtils.formatDuration( timeC - timeA, "HH:mm:ss")).append("\n")
@@ -78,6 +169,19 @@ public class Processor {
             .append(getStatStr("updated            :", result.get(RT_UPD_SUCCESS).get(), result.get(RT_UPD_FAILURE).get(), "\n"))
             .append(getStatStr("removed            :", result.get(RT_DEL_SUCCESS).get(), result.get(RT_DEL_FAILURE).get(), "\n"))
             .append(getStatStr("skipped hidden     :", result.get(RT_SKP_HIDDEN).get(), null, "\n"))
+            .append(getStatStr("skipped unchanged  :", result.get(RT_SKP_UNCHANGED).get(), null, "\n"))
+            .append("-------------------------------------------------------------").append("\n")
+            .append(String.format("%20s %10s %10s %10s\n", "", "HITS", "MISSES", "RATIO"))
+            .append(getCacheStr("include cache      :", result.get(RT_INC_HIT).get(), result.get(RT_INC_MISS).get(), "\n"))
+            .append("-------------------------------------------------------------").append("\n")
+            .append(String.format("%20s %10s %10s %10s %10s\n", "", "REQUESTS", "FAILURES", "RETRIES", "AVG, MS"))
+            .append(getRequestStr("confluence requests:", result.get(RT_HTTP_REQUEST).get(), result.get(RT_HTTP_FAILURE).get(), result.get(RT_HTTP_RETRY).get(), result.get(RT_HTTP_TIME).get(), "\n"))
+            .append("-------------------------------------------------------------").append("\n")
+            .append(String.format("%20s %10s %10s %10s\n", "", "CURRENT", "MIN", "MAX"))
+            .append(getLimitStr("concurrency limit  :", concurrencyLimiter.history(), "\n"))
+            .append(String.format("%20s ", "limit history      :"))
+            .append(getLimitHistoryStr(concurrencyLimiter.history(), "\n"))
+            .append("-------------------------------------------------------------").append("\n")
             .append(String.format("%20s", "duplicate titles   :")).append("\n")
             .append(trackingService
                 .get()
@@ -89,41 +193,44 @@ public class Processor {
 
     }
 
-    private ProcessingResult removeStaleArticles(String directoryPath) {
+    // removes pages not found in processed documents; if directories are given, only pages published from them are checked
+    private ProcessingResult removeStaleArticles(String space, Collection<String> dirs) {
 
         ProcessingResult result = new ProcessingResult();
 
         if (confluence.canPublish()) {
-            Collection<Document> documents = getRepositoryDocuments(directoryPath);
-            List<String> repoTitles = documents.stream().map(d -> d.title()).collect(Collectors.toList());
+            // repository documents are indexed by title during processing, no need to re-read them
+            Set<String> repoTitles = trackingService.titles();
 
-            Collection<Page> pages = confluence.getPages(appConfig.getSpace());
+            Set<String> publishedIds = (null == dirs)
+                ? null
+                : dirs.stream().flatMap(d -> manifestService.pageIds(space, d).stream()).collect(Collectors.toSet());
 
-            List<String> serverTitles = pages
+            // space snapshot is up to date with pages published in this run
+            List<Page> stalePages = spaceIndex.getPages(space)
                 .stream()
+                .filter(p -> null == publishedIds || publishedIds.contains(p.id()))
                 .filter(p -> p.labels().stream().noneMatch(protectedLabels::contains))
-                .map(d -> d.title()).collect(Collectors.toList());
-//            List<String> serverTitles = pages.stream().map(d -> d.title()).collect(Collectors.toList());
+                .filter(p -> !repoTitles.contains(p.title()))
+                .collect(Collectors.toList());
 
-            serverTitles.removeAll(repoTitles);
-            if (serverTitles.size() > 0) {
+            if (stalePages.size() > 0) {
                 log.info("--- to be removed -------------------------------------------------");
-                serverTitles.stream().forEach(log::info);
+                stalePages.stream().map(Page::title).forEach(log::info);
                 log.info("-------------------------------------------------------------------");
             }
 
-            serverTitles
+            // page ids are already known from space listing
+            stalePages
                 .stream()
-                .forEach(title -> {
-                    confluence
-                        .getPageId(appConfig.getSpace(), title)
-                        .ifPresent(pageId -> {
-                            log.trace("removing page #{}", pageId);
-                            if (confluence.deletePage(pageId, title) > 0)
-                                result.add(RT_DEL_SUCCESS);
-                            else
-                                result.add(RT_DEL_FAILURE);
-                        });
+                .forEach(page -> {
+                    log.trace("removing page #{}", page.id());
+                    if (confluence.deletePage(page.id(), page.title()) > 0) {
+                        manifestService.removePage(page.id());
+                        spaceIndex.remove(page.id());
+                        result.add(RT_DEL_SUCCESS);
+                    } else
+                        result.add(RT_DEL_FAILURE);
                 })
             ;
         }
@@ -131,31 +238,54 @@ public class Processor {
         return result;
     }
 
-    private Collection<Document> getRepositoryDocuments(String directoryPath) {
-        List<Document> documents = new ArrayList<>();
-        try {
-            Files.list(Paths.get(directoryPath))
-                    .map(Path::toFile)
-                    .filter(f -> f.isDirectory())
-                    .map(File::toPath)
-                    .map(Path::toString)
-                    .parallel()
-                    .forEach(d -> documents.addAll(getRepositoryDocuments(d)))
-            ;
-            Files.list(Paths.get(directoryPath))
-                    .map(Path::toFile)
-                    .filter(File::isFile)
-                    .filter(f -> f.getName().endsWith(".adoc") || f.getName().endsWith(".asciidoc"))
-                    .map(f -> f.getAbsolutePath())
-                    .parallel()
-                    .map(f -> fileProcessor.read(f, false))
-                    .filter(d -> d.isPresent())
-                    .forEach(d -> documents.add(d.get()))
-            ;
-        } catch (IOException e) {
-            e.printStackTrace();
+    private String getCacheStr(String prefix, int hits, int misses, String suffix) {
+        if (hits + misses == 0)
+            return String.format("%20s %10d %10d %10s%s", prefix, hits, misses, "-", suffix);
+        else
+            return String.format("%20s %10d %10d %9.1f%%%s", prefix, hits, misses, 100.0 * hits / (hits + misses), suffix);
+    }
+
+    private String getRequestStr(String prefix, int requests, int failures, int retries, int time, String suffix) {
+        if (requests == 0)
+            return String.format("%20s %10d %10d %10d %10s%s", prefix, requests, failures, retries, "-", suffix);
+        else
+            return String.format("%20s %10d %10d %10d %10d%s", prefix, requests, failures, retries, time / requests, suffix);
+    }
+
+    private String getLimitStr(String prefix, List<ConcurrencyLimiter.Change> history, String suffix) {
+        if (history.isEmpty())
+            return String.format("%20s %10s %10s %10s%s", prefix, "-", "-", "-", suffix);
+        IntSummaryStatistics limits = history.stream().mapToInt(ConcurrencyLimiter.Change::limit).summaryStatistics();
+        return String.format("%20s %10d %10d %10d%s", prefix, history.get(history.size() - 1).limit(), limits.getMin(), limits.getMax(), suffix);
+    }
+
+    // limit changes (with reason of decrease), most recent ones if history is too long
+    private String getLimitHistoryStr(List<ConcurrencyLimiter.Change> history, String suffix) {
+        if (history.size() <= 1)
+            return "-" + suffix;
+        List<String> changes = history
+            .subList(Math.max(0, history.size() - LIMIT_HISTORY_SIZE), history.size())
+            .stream()
+            .map(c -> ("increase".equals(c.reason()) || "start".equals(c.reason()))
+                ? String.valueOf(c.limit())
+                : c.limit() + " (" + c.reason() + ")")
+            .collect(Collectors.toList());
+        if (history.size() > LIMIT_HISTORY_SIZE)
+            changes.add(0, "...");
+        StringBuilder result = new StringBuilder();
+        int lineLength = 0;
+        for (String change : changes) {
+            if (lineLength > 0 && lineLength + change.length() > 40) {
+                result.append(",\n").append(StringUtils.repeat(" ", 21));
+                lineLength = 0;
+            } else if (lineLength > 0) {
+                result.append(", ");
+                lineLength += 2;
+            }
+            result.append(change);
+            lineLength += change.length();
         }
-        return documents;
+        return result.append(suffix).toString();
     }
 
     private String getStatStr(String prefix, Integer success, Integer failures, String suffix) {
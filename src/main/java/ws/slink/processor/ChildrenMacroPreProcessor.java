@@ -4,29 +4,29 @@ import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Preprocessor;
 import org.asciidoctor.extension.PreprocessorReader;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
-public class ChildrenMacroPreProcessor extends Preprocessor {
+/**
+ * uncomments "// ... children::" lines: everything before last "children::" is removed
+ */
+public class ChildrenMacroPreProcessor extends Preprocessor implements LineProcessor {
 
-    private static final String CHILDREN_MACRO = "^(//)(.*)(children::)(.*)";
-    private static final Pattern CHILDREN_PATTERN = Pattern.compile(CHILDREN_MACRO, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final String COMMENT = "//";
+    private static final String CHILDREN_MACRO = "children::";
 
     @Override
     public void process (Document document, PreprocessorReader reader) {
-        List<String> lines = reader.readLines();
-        List<String> newLines = new ArrayList<>();
-        lines.stream().forEach(line -> {
-            Matcher m = CHILDREN_PATTERN.matcher(line);
-            if (m.matches()) {
-                newLines.add(line.replace(m.group(1)+m.group(2), ""));
-            } else {
-                newLines.add(line);
-            }
-        });
-        reader.restoreLines(newLines);
+        LineBlockPreProcessor.rewrite(reader, Collections.singletonList(this));
+    }
+
+    @Override
+    public String process(String line) {
+        if (!line.startsWith(COMMENT))
+            return line;
+        int macro = LineBlockPreProcessor.lastIndexOf(line, CHILDREN_MACRO, line.length());
+        if (macro < COMMENT.length())
+            return line;
+        return line.replace(line.substring(0, macro), "");
     }
 
 }
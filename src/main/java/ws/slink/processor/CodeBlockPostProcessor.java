@@ -4,83 +4,228 @@ import lombok.extern.slf4j.Slf4j;
 import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Postprocessor;
 
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-
+/**
+ * replaces code blocks marked by {@link CodeBlockProcessor} with confluence code macro:
+ *
+ *   <pre>$$$$$$language$$$$$$code$$$$$$</pre>
+ *
+ * document is scanned line by line in a single pass (no regular expressions, no intermediate strings);
+ * code lines are unescaped (&amp;lt; &amp;gt; &amp;amp;) directly in output buffer
+ *
+ */
 @Slf4j
 public class CodeBlockPostProcessor extends Postprocessor {
 
-    private static final String  CODE_START      = "(.*)(<pre>)([$]{6})([A-Za-z]+)([$]{6})(.*)";
-    private static final String  CODE_END        = "(.*)([$]{6})(</pre>)(.*)";
-    private static final String  CODE_ONELINE    = "(.*)(<pre>)([$]{6})([A-Za-z]+)([$]{6})(.*)([$]{6})(</pre>)(.*)";
-    private static final Pattern START_PATTERN   = Pattern.compile(CODE_START, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-    private static final Pattern END_PATTERN     = Pattern.compile(CODE_END, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-    private static final Pattern ONELINE_PATTERN = Pattern.compile(CODE_ONELINE, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final String MARKER    = "$$$$$$";
+    private static final String CODE_OPEN = "<pre>" + MARKER;  // followed by language and MARKER
+    private static final String CODE_END  = MARKER + "</pre>";
 
     // https://confluence.atlassian.com/display/CONF55/Code+Block+Macro
 
     @Override
     public String process(Document document, String convertedDocument) {
-        ThreadLocal<Boolean> inCodeBlock = ThreadLocal.withInitial(() -> false);
-        return Arrays.stream(convertedDocument.split("\n"))
-            .map(s -> this.processString(s, inCodeBlock))
-            .collect(Collectors.joining("\n"));
+        if (ConfluenceConverter.isNative(document))
+            return convertedDocument;
+
+        // trailing line feeds are not kept in output
+        int end = convertedDocument.length();
+        while (end > 0 && convertedDocument.charAt(end - 1) == '\n')
+            end--;
+
+        StringBuilder output = new StringBuilder(end + 1024);
+        boolean inCodeBlock = false;
+        int lineStart = 0;
+        while (true) {
+            int lineEnd = convertedDocument.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd > end)
+                lineEnd = end;
+            inCodeBlock = processLine(convertedDocument, lineStart, lineEnd, inCodeBlock, output);
+            if (lineEnd >= end)
+                break;
+            output.append('\n');
+            lineStart = lineEnd + 1;
+        }
+        return output.toString();
     }
 
-    private String processString(String string, ThreadLocal<Boolean> inCodeBlock) {
-        Matcher matcherA = ONELINE_PATTERN.matcher(string);
-        Matcher matcherB = START_PATTERN.matcher(string);
-        Matcher matcherC = END_PATTERN.matcher(string);
-        String result;
-        if (matcherA.matches()) {
-            result = unescapeSymbols(matcherA.group(1) + codeOpenElement(matcherA.group(4)) + matcherA.group(6) + codeCloseElement() + matcherA.group(9));
-        } else if (matcherB.matches()) {
-            result = unescapeSymbols(matcherB.group(1) + codeOpenElement(matcherB.group(4)) + matcherB.group(6));
-            inCodeBlock.set(true);
-        } else if (matcherC.matches()) {
-            result = unescapeSymbols(string.replace(matcherC.group(2) + matcherC.group(3), "") + codeCloseElement());
-            inCodeBlock.set(false);
+    /**
+     * appends processed line to output
+     *
+     * @return code block state after the line
+     */
+    private boolean processLine(String input, int start, int end, boolean inCodeBlock, StringBuilder output) {
+        int mark = output.length();
+
+        if (indexOf(input, MARKER, start, end) < 0) {
+            // no markers in line
+            output.append(input, start, end);
+            if (inCodeBlock)
+                unescapeSymbols(output, mark);
+            return inCodeBlock;
+        }
+
+        // last code block end in line
+        int codeEnd = -1;
+        for (int i = end - CODE_END.length(); i >= start; i--) {
+            if (matches(input, i, CODE_END)) {
+                codeEnd = i;
+                break;
+            }
+        }
+
+        // last code block start in line (overall and followed by code block end)
+        int codeStart = -1, codeStartLanguageEnd = -1;
+        int onelineStart = -1, onelineLanguageEnd = -1;
+        for (int i = start; i < end; i++) {
+            int languageEnd = (input.charAt(i) == '<') ? languageEnd(input, i, end) : -1;
+            if (languageEnd > 0) {
+                codeStart = i;
+                codeStartLanguageEnd = languageEnd;
+                if (codeEnd >= 0 && languageEnd + MARKER.length() <= codeEnd) {
+                    onelineStart = i;
+                    onelineLanguageEnd = languageEnd;
+                }
+            }
+        }
+
+        if (onelineStart >= 0) {
+            // code block starts and ends in this line
+            output.append(input, start, onelineStart);
+            codeOpenElement(output, input, onelineStart + CODE_OPEN.length(), onelineLanguageEnd);
+            output.append(input, onelineLanguageEnd + MARKER.length(), codeEnd);
+            codeCloseElement(output);
+            output.append(input, codeEnd + CODE_END.length(), end);
+            unescapeSymbols(output, mark);
+            return inCodeBlock;
+        } else if (codeStart >= 0) {
+            // code block starts in this line
+            output.append(input, start, codeStart);
+            codeOpenElement(output, input, codeStart + CODE_OPEN.length(), codeStartLanguageEnd);
+            output.append(input, codeStartLanguageEnd + MARKER.length(), end);
+            unescapeSymbols(output, mark);
+            return true;
+        } else if (codeEnd >= 0) {
+            // code block ends in this line: all the end markers (as written in found one) are removed
+            String endMarker = input.substring(codeEnd, codeEnd + CODE_END.length());
+            int from = start;
+            for (int i = indexOf(input, endMarker, from, end); i >= 0; i = indexOf(input, endMarker, from, end)) {
+                output.append(input, from, i);
+                from = i + endMarker.length();
+            }
+            output.append(input, from, end);
+            codeCloseElement(output);
+            unescapeSymbols(output, mark);
+            return false;
         } else {
-            result = (inCodeBlock.get()) ? unescapeSymbols(string) : string;
+            output.append(input, start, end);
+            if (inCodeBlock)
+                unescapeSymbols(output, mark);
+            return inCodeBlock;
+        }
+    }
+
+    /**
+     * @return end position of language name if code block start marker is found at given position, -1 otherwise
+     */
+    private int languageEnd(String input, int position, int end) {
+        if (position + CODE_OPEN.length() > end || !matches(input, position, CODE_OPEN))
+            return -1;
+        int languageEnd = position + CODE_OPEN.length();
+        while (languageEnd < end && isLatinLetter(input.charAt(languageEnd)))
+            languageEnd++;
+        if (languageEnd == position + CODE_OPEN.length()
+         || languageEnd + MARKER.length() > end
+         || !input.startsWith(MARKER, languageEnd))
+            return -1;
+        return languageEnd;
+    }
+
+    // position of pattern within [from, to) range of input, -1 if not found
+    private int indexOf(String input, String pattern, int from, int to) {
+        char first = pattern.charAt(0);
+        for (int i = from, last = to - pattern.length(); i <= last; i++)
+            if (input.charAt(i) == first && input.startsWith(pattern, i))
+                return i;
+        return -1;
+    }
+
+    // case-insensitive (ASCII) match of pattern at given position
+    private boolean matches(String input, int position, String pattern) {
+        if (position < 0 || position + pattern.length() > input.length())
+            return false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = input.charAt(position + i);
+            if (c >= 'A' && c <= 'Z')
+                c = (char) (c + ('a' - 'A'));
+            if (c != pattern.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isLatinLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    // unescapes output contents starting from given position in place
+    private void unescapeSymbols(StringBuilder output, int from) {
+        int length = output.length();
+        int target = from;
+        for (int source = from; source < length; ) {
+            char c = output.charAt(source);
+            if (c == '&') {
+                if (startsWith(output, source, length, "&lt;")) {
+                    output.setCharAt(target++, '<');
+                    source += 4;
+                    continue;
+                } else if (startsWith(output, source, length, "&gt;")) {
+                    output.setCharAt(target++, '>');
+                    source += 4;
+                    continue;
+                } else if (startsWith(output, source, length, "&amp;")) {
+                    output.setCharAt(target++, '&');
+                    source += 5;
+                    continue;
+                }
+            }
+            output.setCharAt(target++, c);
+            source++;
         }
-//        System.err.println(" > " + result);
-        return result;
+        output.setLength(target);
     }
 
-    private String unescapeSymbols(String input) {
-        return input
-            .replaceAll("&lt;", "<")
-            .replaceAll("&gt;", ">")
-            .replaceAll("&amp;", "&");
+    private boolean startsWith(StringBuilder output, int position, int length, String entity) {
+        if (position + entity.length() > length)
+            return false;
+        for (int i = 0; i < entity.length(); i++)
+            if (output.charAt(position + i) != entity.charAt(i))
+                return false;
+        return true;
     }
 
     // see:
     //    https://confluence.atlassian.com/display/CONF55/Code+Block+Macro
     //    https://stackoverflow.com/questions/30194918/how-do-you-insert-a-confluence-macro-into-a-page-created-by-the-confluence-rest
-    private String codeOpenElement(String language) {
-        return new StringBuilder()
+    static void codeOpenElement(StringBuilder output, String input, int languageStart, int languageEnd) {
+        output
             .append("<ac:structured-macro ac:name=\"code\">")
             .append("<ac:parameter ac:name=\"title\"></ac:parameter>")
             .append("<ac:parameter ac:name=\"theme\">default</ac:parameter>")
             .append("<ac:parameter ac:name=\"linenumbers\">false</ac:parameter>")
             .append("<ac:parameter ac:name=\"language\">")
-            .append(language)
+            .append(input, languageStart, languageEnd)
             .append("</ac:parameter>")
             .append("<ac:parameter ac:name=\"firstline\">0001</ac:parameter>")
             .append("<ac:parameter ac:name=\"collapse\">false</ac:parameter>")
             .append("<ac:plain-text-body>")
             .append("<![CDATA[")
-            .toString()
         ;
     }
-    private String codeCloseElement() {
-        return new StringBuilder()
+    static void codeCloseElement(StringBuilder output) {
+        output
             .append("]]>")
             .append("</ac:plain-text-body>")
             .append("</ac:structured-macro>")
-            .toString()
         ;
     }
 
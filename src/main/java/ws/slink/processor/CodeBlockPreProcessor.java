@@ -5,30 +5,29 @@ import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Preprocessor;
 import org.asciidoctor.extension.PreprocessorReader;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
+/**
+ * replaces source block attributes line ("[source...]") with "[code...]" for {@link CodeBlockProcessor}
+ */
 @Slf4j
-public class CodeBlockPreProcessor extends Preprocessor {
+public class CodeBlockPreProcessor extends Preprocessor implements LineProcessor {
 
-    private static final String CODE_START = "^(\\[source)(.*\\])$";
-    private static final Pattern START_PATTERN = Pattern.compile(CODE_START, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final String CODE_START = "[source";
 
     @Override
     public void process (Document document, PreprocessorReader reader) {
-        List<String> lines = reader.readLines();
-        List<String> newLines = new ArrayList<>();
+        LineBlockPreProcessor.rewrite(reader, Collections.singletonList(this));
+    }
 
-        lines.stream().forEach(line -> {
-            Matcher m = START_PATTERN.matcher(line);
-            if (m.matches()) {
-                newLines.add(line.replace(m.group(1), "[code"));
-            } else {
-                newLines.add(line);
-            }
-        });
-        reader.restoreLines(newLines);
+    @Override
+    public String process(String line) {
+        if (line.length() <= CODE_START.length()
+         || line.charAt(0) != '['
+         || line.charAt(line.length() - 1) != ']'
+         || !LineBlockPreProcessor.matches(line, 0, CODE_START))
+            return line;
+        return line.replace(line.substring(0, CODE_START.length()), "[code");
     }
+
 }
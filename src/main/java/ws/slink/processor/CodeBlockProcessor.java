@@ -30,6 +30,11 @@ public class CodeBlockProcessor extends BlockProcessor {
         String language = (String)attributes.get("2");
         if (StringUtils.isBlank(language))
             language = defaultCodeLanguage;
+        if (ConfluenceConverter.isNative(parent.getDocument())) {
+            // confluence backend converts code blocks itself, no markers needed
+            attributes.put("language", language);
+            return createBlock(parent, "listing", content, attributes);
+        }
         Block block = createBlock(
              parent
             ,"listing"
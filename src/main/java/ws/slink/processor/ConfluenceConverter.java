@@ -0,0 +1,517 @@
+package ws.slink.processor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.asciidoctor.ast.Block;
+import org.asciidoctor.ast.Cell;
+import org.asciidoctor.ast.Column;
+import org.asciidoctor.ast.ContentNode;
+import org.asciidoctor.ast.DescriptionList;
+import org.asciidoctor.ast.DescriptionListEntry;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.ast.ListItem;
+import org.asciidoctor.ast.PhraseNode;
+import org.asciidoctor.ast.Row;
+import org.asciidoctor.ast.Section;
+import org.asciidoctor.ast.StructuralNode;
+import org.asciidoctor.ast.Table;
+import org.asciidoctor.converter.ConverterFor;
+import org.asciidoctor.converter.StringConverter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * converts AsciiDoc AST directly to confluence storage format (XHTML with confluence macros);
+ *
+ * code, notice (admonition), TOC and image blocks are emitted as confluence macros in a single pass, so that
+ * no post-hoc string and DOM rewriting of converted document (see {@link CodeBlockPostProcessor} and
+ * {@link DomBlockPostProcessor}) is needed; those postprocessors are only used with 'xhtml5' backend
+ *
+ */
+@Slf4j
+@ConverterFor(ConfluenceConverter.BACKEND)
+public class ConfluenceConverter extends StringConverter {
+
+    public static final String BACKEND = "confluence";
+
+    private static final Pattern UNESCAPED_AMPERSAND = Pattern.compile("&(?![#\\w]+;)");
+
+    // footnotes collected while converting document, appended to the end of (top-level) document
+    private final List<PhraseNode> footnotes = new ArrayList<>();
+
+    // nested documents (asciidoc table cells) are converted with the same converter instance
+    private int documentDepth = 0;
+
+    public ConfluenceConverter(String backend, Map<String, Object> opts) {
+        super(backend, opts);
+    }
+
+    /**
+     * @return true if document is being converted by this converter
+     */
+    public static boolean isNative(Document document) {
+        return null != document && BACKEND.equals(document.getAttribute("backend"));
+    }
+
+    @Override
+    public String convert(ContentNode node, String transform, Map<Object, Object> opts) {
+        if (null == transform)
+            transform = node.getNodeName();
+        switch (transform) {
+            case "document":
+            case "embedded":         return document((Document) node);
+            case "outline":          return "";
+            case "preamble":         return preamble((StructuralNode) node);
+            case "section":          return section((Section) node);
+            case "floating_title":   return heading((StructuralNode) node, node.getId(), ((StructuralNode) node).getTitle());
+            case "paragraph":        return title((StructuralNode) node) + "<p>" + content(node) + "</p>";
+            case "admonition":       return admonition((StructuralNode) node);
+            case "listing":          return listing((Block) node);
+            case "literal":          return title((StructuralNode) node) + "<pre>" + content(node) + "</pre>";
+            case "stem":             return stem((Block) node);
+            case "pass":             return content(node);
+            case "image":            return title((StructuralNode) node, "<p>" + image(node, ((StructuralNode) node).getAttribute("target").toString()) + "</p>");
+            case "toc":              return "macro".equals(tocPlacement(node.getDocument())) ? tableOfContentsMacro() : "";
+            case "ulist":            return list((org.asciidoctor.ast.List) node, "ul");
+            case "olist":            return list((org.asciidoctor.ast.List) node, "ol");
+            case "colist":           return list((org.asciidoctor.ast.List) node, "ol");
+            case "dlist":            return descriptionList((DescriptionList) node);
+            case "table":            return table((Table) node);
+            case "example":          return panel((StructuralNode) node);
+            case "sidebar":          return panel((StructuralNode) node);
+            case "quote":            return quote((StructuralNode) node, content(node));
+            case "verse":            return quote((StructuralNode) node, "<p>" + content(node).replace("\n", "<br/>\n") + "</p>");
+            case "open":             return title((StructuralNode) node) + content(node);
+            case "thematic_break":   return "<hr/>";
+            case "page_break":       return "";
+            case "audio":
+            case "video":            return title((StructuralNode) node) + "<p>" + link(node.getAttribute("target").toString(), node.getAttribute("target").toString()) + "</p>";
+            case "inline_anchor":    return anchor((PhraseNode) node);
+            case "inline_break":     return ((PhraseNode) node).getText() + "<br/>";
+            case "inline_button":    return "<strong>" + ((PhraseNode) node).getText() + "</strong>";
+            case "inline_callout":   return "<strong>(" + ((PhraseNode) node).getText() + ")</strong>";
+            case "inline_footnote":  return footnote((PhraseNode) node);
+            case "inline_image":     return inlineImage((PhraseNode) node);
+            case "inline_indexterm": return "visible".equals(((PhraseNode) node).getType()) ? ((PhraseNode) node).getText() : "";
+            case "inline_kbd":       return keyboard((PhraseNode) node);
+            case "inline_menu":      return menu((PhraseNode) node);
+            case "inline_quoted":    return quoted((PhraseNode) node);
+            default:
+                log.warn("unsupported node '{}' is converted as plain content", transform);
+                return (node instanceof StructuralNode) ? content(node) : ((PhraseNode) node).getText();
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // structural nodes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private String document(Document document) {
+        StringBuilder output = new StringBuilder();
+        if (document.hasAttribute("showtitle") && StringUtils.isNotBlank(document.getDoctitle()))
+            output.append("<h1>").append(document.getDoctitle()).append("</h1>\n");
+        // auto-placed TOC goes to top level document only (not to nested documents of asciidoc table cells)
+        if (documentDepth == 0 && hasSections(document) && "auto".equals(tocPlacement(document)))
+            output.append(tableOfContentsMacro()).append("\n");
+        documentDepth++;
+        try {
+            output.append(content(document));
+        } finally {
+            documentDepth--;
+        }
+        if (documentDepth == 0 && !footnotes.isEmpty()) {
+            output.append("\n<hr/>");
+            footnotes.forEach(footnote -> output
+                .append("\n<p><sup>[").append(footnote.getAttribute("index")).append("]</sup> ")
+                .append(footnote.getText())
+                .append("</p>"));
+            footnotes.clear();
+        }
+        return output.toString();
+    }
+
+    private String preamble(StructuralNode preamble) {
+        Document document = preamble.getDocument();
+        if ("preamble".equals(tocPlacement(document)))
+            return content(preamble) + "\n" + tableOfContentsMacro();
+        return content(preamble);
+    }
+
+    private String section(Section section) {
+        String title = section.isNumbered() ? sectionNumber(section) + ". " + section.getTitle() : section.getTitle();
+        return heading(section, section.getId(), title) + "\n" + content(section);
+    }
+
+    // full section number, e.g. "1.2"
+    private String sectionNumber(Section section) {
+        ContentNode parent = section.getParent();
+        if (parent instanceof Section && ((Section) parent).isNumbered())
+            return sectionNumber((Section) parent) + "." + section.getNumeral();
+        return section.getNumeral();
+    }
+
+    private String heading(StructuralNode node, String id, String title) {
+        int level = Math.min(node.getLevel() + 1, 6);
+        return new StringBuilder()
+            .append("<h").append(level)
+            .append(StringUtils.isBlank(id) ? "" : " id=\"" + id + "\"")
+            .append(">")
+            .append(title)
+            .append("</h").append(level).append(">")
+            .toString();
+    }
+
+    // https://confluence.atlassian.com/display/CONF55/Note+Macro
+    // https://confluence.atlassian.com/display/CONF55/Info+Macro
+    // https://confluence.atlassian.com/display/CONF55/Tip+Macro
+    // https://confluence.atlassian.com/display/CONF55/Warning+Macro
+    private String admonition(StructuralNode node) {
+        String noticeType = NoticeBlockPostProcessor.getConfluenceNoticeType(String.valueOf(node.getAttribute("name")));
+        String content = "simple".equals(node.getContentModel()) ? "<p>" + content(node) + "</p>" : content(node);
+        return new StringBuilder()
+            .append("<ac:structured-macro ac:name=\"").append(noticeType).append("\">")
+            .append("<ac:parameter ac:name=\"icon\">false</ac:parameter>")
+            .append("<ac:parameter ac:name=\"title\">")
+            .append(StringUtils.isBlank(node.getTitle()) ? StringUtils.capitalize(noticeType) : node.getTitle())
+            .append("</ac:parameter>")
+            .append("<ac:rich-text-body>\n")
+            .append(content)
+            .append("\n</ac:rich-text-body>")
+            .append("</ac:structured-macro>")
+            .toString();
+    }
+
+    // https://confluence.atlassian.com/display/CONF55/Code+Block+Macro
+    private String listing(Block block) {
+        if (!isCode(block))
+            return title(block) + "<pre>" + content(block) + "</pre>";
+        String language = String.valueOf(block.getAttribute("language", ""));
+        StringBuilder output = new StringBuilder(title(block));
+        CodeBlockPostProcessor.codeOpenElement(output, language, 0, language.length());
+        // raw (not substituted) source is put into CDATA section, which can not contain CDATA end marker
+        output.append(block.getSource().replace("]]>", "]]]]><![CDATA[>"));
+        CodeBlockPostProcessor.codeCloseElement(output);
+        return output.toString();
+    }
+
+    // formula is kept in latex delimiters, which are replaced with mathjax markers by LatexBlockPostProcessor
+    private String stem(Block block) {
+        return title(block) + "<p>" + "\\" + "[" + escape(block.getSource()) + "\\" + "]" + "</p>";
+    }
+
+    private String list(org.asciidoctor.ast.List list, String tag) {
+        StringBuilder output = new StringBuilder(title(list)).append("<").append(tag);
+        if ("ol".equals(tag) && list.hasAttribute("start"))
+            output.append(" start=\"").append(list.getAttribute("start")).append("\"");
+        output.append(">");
+        boolean checklist = list.isOption("checklist");
+        for (StructuralNode node : list.getItems()) {
+            ListItem item = (ListItem) node;
+            output.append("\n<li>");
+            if (checklist && item.hasAttribute("checkbox"))
+                output.append(item.hasAttribute("checked") ? "&#9745; " : "&#9744; ");
+            output.append(item.getText());
+            if (!item.getBlocks().isEmpty())
+                output.append("\n").append(content(item));
+            output.append("</li>");
+        }
+        return output.append("\n</").append(tag).append(">").toString();
+    }
+
+    private String descriptionList(DescriptionList list) {
+        StringBuilder output = new StringBuilder(title(list)).append("<dl>");
+        for (DescriptionListEntry entry : list.getItems()) {
+            for (ListItem term : entry.getTerms())
+                output.append("\n<dt>").append(term.getText()).append("</dt>");
+            ListItem description = entry.getDescription();
+            if (null != description) {
+                output.append("\n<dd>");
+                if (description.hasText())
+                    output.append("<p>").append(description.getText()).append("</p>");
+                if (!description.getBlocks().isEmpty())
+                    output.append("\n").append(content(description));
+                output.append("</dd>");
+            }
+        }
+        return output.append("\n</dl>").toString();
+    }
+
+    private String table(Table table) {
+        StringBuilder output = new StringBuilder(title(table)).append("<table>\n<colgroup>");
+        for (Column column : table.getColumns())
+            output.append("\n<col style=\"width: ").append(column.getAttribute("colpcwidth")).append("%;\"/>");
+        output.append("\n</colgroup>");
+        tableSection(output, "thead", table.getHeader());
+        tableSection(output, "tbody", table.getBody());
+        tableSection(output, "tfoot", table.getFooter());
+        return output.append("\n</table>").toString();
+    }
+
+    private void tableSection(StringBuilder output, String tag, List<Row> rows) {
+        if (rows.isEmpty())
+            return;
+        output.append("\n<").append(tag).append(">");
+        for (Row row : rows) {
+            output.append("\n<tr>");
+            for (Cell cell : row.getCells()) {
+                String cellTag = ("thead".equals(tag) || "header".equals(cell.getStyle())) ? "th" : "td";
+                output.append("\n<").append(cellTag);
+                if (cell.getColspan() > 1)
+                    output.append(" colspan=\"").append(cell.getColspan()).append("\"");
+                if (cell.getRowspan() > 1)
+                    output.append(" rowspan=\"").append(cell.getRowspan()).append("\"");
+                output.append(">").append(cellContent(cell, "thead".equals(tag))).append("</").append(cellTag).append(">");
+            }
+            output.append("\n</tr>");
+        }
+        output.append("\n</").append(tag).append(">");
+    }
+
+    private String cellContent(Cell cell, boolean header) {
+        if (header)
+            return cell.getText();
+        if ("asciidoc".equals(cell.getStyle()))
+            return String.valueOf(cell.getContent());
+        if ("literal".equals(cell.getStyle()))
+            return "<pre>" + cell.getText() + "</pre>";
+        Object content = cell.getContent();
+        if (content instanceof List) {
+            StringBuilder output = new StringBuilder();
+            for (Object paragraph : (List<?>) content)
+                output.append("<p>").append(paragraph).append("</p>");
+            return output.toString();
+        }
+        return String.valueOf(content);
+    }
+
+    // https://confluence.atlassian.com/display/CONF55/Panel+Macro
+    // https://confluence.atlassian.com/display/CONF55/Expand+Macro
+    private String panel(StructuralNode node) {
+        String macro = node.isOption("collapsible") ? "expand" : "panel";
+        StringBuilder output = new StringBuilder()
+            .append("<ac:structured-macro ac:name=\"").append(macro).append("\">");
+        if (StringUtils.isNotBlank(node.getTitle()))
+            output.append("<ac:parameter ac:name=\"title\">").append(node.getTitle()).append("</ac:parameter>");
+        return output
+            .append("<ac:rich-text-body>\n")
+            .append(content(node))
+            .append("\n</ac:rich-text-body>")
+            .append("</ac:structured-macro>")
+            .toString();
+    }
+
+    private String quote(StructuralNode node, String content) {
+        StringBuilder output = new StringBuilder(title(node)).append("<blockquote>\n").append(content);
+        String attribution = (String) node.getAttribute("attribution");
+        String citation = (String) node.getAttribute("citetitle");
+        if (StringUtils.isNotBlank(attribution) || StringUtils.isNotBlank(citation))
+            output
+                .append("\n<p>&#8212; ")
+                .append(StringUtils.defaultString(attribution))
+                .append(StringUtils.isNotBlank(attribution) && StringUtils.isNotBlank(citation) ? ", " : "")
+                .append(StringUtils.isBlank(citation) ? "" : "<cite>" + citation + "</cite>")
+                .append("</p>");
+        return output.append("\n</blockquote>").toString();
+    }
+
+    // https://confluence.atlassian.com/display/CONF55/Table+of+Contents+Macro
+    private String tableOfContentsMacro() {
+        return new StringBuilder()
+            .append("<ac:structured-macro ac:name=\"toc\">")
+            .append("<ac:parameter ac:name=\"printable\">true</ac:parameter>")
+            .append("<ac:parameter ac:name=\"style\">circle</ac:parameter>")
+            .append("<ac:parameter ac:name=\"indent\">1em</ac:parameter>")
+            .append("<ac:parameter ac:name=\"maxLevel\">3</ac:parameter>")
+            .append("<ac:parameter ac:name=\"minLevel\">2</ac:parameter>")
+            .append("<ac:parameter ac:name=\"class\">bigpink</ac:parameter>")
+            .append("<ac:parameter ac:name=\"type\">list</ac:parameter>")
+            .append("<ac:parameter ac:name=\"outline\">false</ac:parameter>")
+            .append("</ac:structured-macro>")
+            .toString();
+    }
+
+    // block title (with caption, e.g. "Figure 1. ") is put as a separate paragraph before block
+    private String title(StructuralNode node) {
+        if (StringUtils.isBlank(node.getTitle()))
+            return "";
+        return "<p><strong>" + StringUtils.defaultString(node.getCaption()) + node.getTitle() + "</strong></p>\n";
+    }
+
+    // image title is put below image
+    private String title(StructuralNode node, String content) {
+        if (StringUtils.isBlank(node.getTitle()))
+            return content;
+        return content + "\n<p><em>" + StringUtils.defaultString(node.getCaption()) + node.getTitle() + "</em></p>";
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // inline nodes
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private String anchor(PhraseNode node) {
+        switch (node.getType()) {
+            case "xref":
+                String target = StringUtils.defaultString(node.getTarget());
+                String text = StringUtils.isNotBlank(node.getText())
+                    ? node.getText()
+                    : referenceText(node.getDocument(), StringUtils.defaultString((String) node.getAttribute("refid"), target));
+                return link(target, text);
+            case "ref":
+                return anchorMacro(node.getId());
+            case "bibref":
+                return anchorMacro(node.getId()) + "[" + StringUtils.defaultString(node.getText(), node.getId()) + "]";
+            case "link":
+            default:
+                return link(node.getTarget(), node.getText());
+        }
+    }
+
+    // title of referenced block (if any)
+    private String referenceText(Document document, String refid) {
+        return document.findBy(Collections.singletonMap("id", refid))
+            .stream()
+            .filter(block -> refid.equals(block.getId()))
+            .map(StructuralNode::getTitle)
+            .filter(StringUtils::isNotBlank)
+            .findFirst()
+            .orElse("[" + refid + "]");
+    }
+
+    // https://confluence.atlassian.com/display/CONF55/Anchor+Macro
+    private String anchorMacro(String id) {
+        return new StringBuilder()
+            .append("<ac:structured-macro ac:name=\"anchor\">")
+            .append("<ac:parameter ac:name=\"\">").append(id).append("</ac:parameter>")
+            .append("</ac:structured-macro>")
+            .toString();
+    }
+
+    private String link(String target, String text) {
+        return "<a href=\"" + attribute(target) + "\">" + text + "</a>";
+    }
+
+    private String footnote(PhraseNode node) {
+        if (!"xref".equals(node.getType()))
+            footnotes.add(node);
+        return "<sup>[" + node.getAttribute("index") + "]</sup>";
+    }
+
+    private String inlineImage(PhraseNode node) {
+        if ("icon".equals(node.getType()))
+            return "[" + node.getTarget() + "]";
+        return image(node, node.getTarget());
+    }
+
+    // https://confluence.atlassian.com/doc/confluence-storage-format-790796544.html#ConfluenceStorageFormat-Images
+    private String image(ContentNode node, String target) {
+        StringBuilder output = new StringBuilder("<ac:image");
+        String align = (String) node.getAttribute("align");
+        if (StringUtils.isBlank(align))
+            align = (String) node.getAttribute("float");
+        if (StringUtils.isNotBlank(align))
+            output.append(" ac:align=\"").append(attribute(align)).append("\"");
+        if (node.hasAttribute("width"))
+            output.append(" ac:width=\"").append(attribute(node.getAttribute("width").toString())).append("\"");
+        if (node.hasAttribute("height"))
+            output.append(" ac:height=\"").append(attribute(node.getAttribute("height").toString())).append("\"");
+        if (node.hasAttribute("alt"))
+            output.append(" ac:alt=\"").append(attribute(node.getAttribute("alt").toString())).append("\"");
+        output
+            .append("><ri:url ri:value=\"")
+            .append(attribute(node.imageUri(target)))
+            .append("\"/></ac:image>");
+        return node.hasAttribute("link")
+            ? link(node.getAttribute("link").toString(), output.toString())
+            : output.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String keyboard(PhraseNode node) {
+        Object keys = node.getAttribute("keys");
+        if (!(keys instanceof List))
+            return "<code>" + node.getText() + "</code>";
+        return "<code>" + StringUtils.join((List<Object>) keys, "+") + "</code>";
+    }
+
+    @SuppressWarnings("unchecked")
+    private String menu(PhraseNode node) {
+        List<Object> items = new ArrayList<>();
+        items.add(node.getAttribute("menu"));
+        Object submenus = node.getAttribute("submenus");
+        if (submenus instanceof List)
+            items.addAll((List<Object>) submenus);
+        if (node.hasAttribute("menuitem"))
+            items.add(node.getAttribute("menuitem"));
+        return "<strong>" + StringUtils.join(items, "&#160;&#8250; ") + "</strong>";
+    }
+
+    private String quoted(PhraseNode node) {
+        String text = node.getText();
+        switch (node.getType()) {
+            case "emphasis":    return "<em>" + text + "</em>";
+            case "strong":      return "<strong>" + text + "</strong>";
+            case "monospaced":  return "<code>" + text + "</code>";
+            case "superscript": return "<sup>" + text + "</sup>";
+            case "subscript":   return "<sub>" + text + "</sub>";
+            case "mark":        return "<span style=\"background-color: rgb(255,255,0);\">" + text + "</span>";
+            case "double":      return "&#8220;" + text + "&#8221;";
+            case "single":      return "&#8216;" + text + "&#8217;";
+            case "latexmath":
+            case "asciimath":   return "\\" + "(" + text + "\\" + ")";
+            default:
+                if (node.hasRole("underline"))
+                    return "<u>" + text + "</u>";
+                if (node.hasRole("line-through"))
+                    return "<s>" + text + "</s>";
+                return text;
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // helpers
+    // ----------------------------------------------------------------------------------------------------------------
+
+    private String content(ContentNode node) {
+        return String.valueOf(((StructuralNode) node).getContent());
+    }
+
+    // source blocks and blocks created by CodeBlockProcessor (with style set in attributes only)
+    private boolean isCode(Block block) {
+        String style = StringUtils.defaultString(block.getStyle(), (String) block.getAttribute("style"));
+        return "source".equals(style) || "code".equals(style) || block.hasAttribute("language");
+    }
+
+    private boolean hasSections(Document document) {
+        return document.getBlocks().stream().anyMatch(block -> block instanceof Section);
+    }
+
+    // TOC placement: 'auto', 'preamble', 'macro' (set with 'toc' or 'toc-placement' attributes) or null if TOC is disabled
+    private String tocPlacement(Document document) {
+        if (null == document || !document.hasAttribute("toc"))
+            return null;
+        String toc = String.valueOf(document.getAttribute("toc"));
+        if ("macro".equals(toc) || "preamble".equals(toc))
+            return toc;
+        return String.valueOf(document.getAttribute("toc-placement", "auto"));
+    }
+
+    // escapes raw text
+    private String escape(String text) {
+        return StringUtils.defaultString(text)
+            .replace("&", "&amp;")
+            .replace("<", "&lt;")
+            .replace(">", "&gt;");
+    }
+
+    // escapes attribute value, which may already contain (substituted) entities
+    private String attribute(String value) {
+        return UNESCAPED_AMPERSAND.matcher(StringUtils.defaultString(value)).replaceAll("&amp;")
+            .replace("<", "&lt;")
+            .replace("\"", "&quot;");
+    }
+
+}
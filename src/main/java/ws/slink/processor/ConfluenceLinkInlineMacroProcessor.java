@@ -10,11 +10,8 @@ import java.util.Map;
 @Name ("cflink")
 public class ConfluenceLinkInlineMacroProcessor extends InlineMacroProcessor {
 
-    private final String confluenceSpaceKey;
-
-    public ConfluenceLinkInlineMacroProcessor(String confluenceSpaceKey) {
-        this.confluenceSpaceKey = confluenceSpaceKey;
-    }
+    // document attribute holding confluence space key of document being converted
+    public static final String SPACE_ATTRIBUTE = "a2c-space";
 
     @Override
     public Object process (ContentNode parent, String target, Map<String, Object> attributes) {
@@ -26,7 +23,7 @@ public class ConfluenceLinkInlineMacroProcessor extends InlineMacroProcessor {
                 space = parts[0];
                 page = parts[1];
             } else {
-                space = confluenceSpaceKey;
+                space = (String) parent.getDocument().getAttribute(SPACE_ATTRIBUTE);
                 page = parts[0];
             }
             Map<String, Object> options = new HashMap<>();
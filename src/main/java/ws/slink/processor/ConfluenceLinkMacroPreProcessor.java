@@ -5,29 +5,34 @@ import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Preprocessor;
 import org.asciidoctor.extension.PreprocessorReader;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
+/**
+ * replaces "link:" with "cflink:" (see {@link ConfluenceLinkInlineMacroProcessor}) in lines containing
+ * "link:...[...]"; last "link:" followed by brackets is taken and all of its occurrences (as written) are replaced
+ */
 @Slf4j
-public class ConfluenceLinkMacroPreProcessor extends Preprocessor {
+public class ConfluenceLinkMacroPreProcessor extends Preprocessor implements LineProcessor {
 
-    private static final String LINK_START = "(.*)(link:)(.*)(\\[)(.*)(\\])(.*)";
-    private static final Pattern START_PATTERN = Pattern.compile(LINK_START, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final String LINK_START = "link:";
 
     @Override
     public void process (Document document, PreprocessorReader reader) {
-        List<String> lines = reader.readLines();
-        List<String> newLines = new ArrayList<>();
-        lines.stream().forEach(line -> {
-            Matcher m = START_PATTERN.matcher(line);
-            if (m.matches()) {
-                newLines.add(line.replace(m.group(2), "cflink:"));
-            } else {
-                newLines.add(line);
-            }
-        });
-        reader.restoreLines(newLines);
+        LineBlockPreProcessor.rewrite(reader, Collections.singletonList(this));
     }
+
+    @Override
+    public String process(String line) {
+        int close = line.lastIndexOf(']');
+        if (close < 0)
+            return line;
+        int open = line.lastIndexOf('[', close - 1);
+        if (open < 0)
+            return line;
+        int link = LineBlockPreProcessor.lastIndexOf(line, LINK_START, open - LINK_START.length());
+        if (link < 0)
+            return line;
+        return line.replace(line.substring(link, link + LINK_START.length()), "cflink:");
+    }
+
 }
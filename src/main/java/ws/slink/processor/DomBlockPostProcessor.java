@@ -0,0 +1,77 @@
+package ws.slink.processor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.Postprocessor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class DomBlockPostProcessor extends Postprocessor {
+
+    private static final List<ElementProcessor> PROCESSORS = Arrays.asList(
+        new NoticeBlockPostProcessor(),
+        new TOCBlockPostProcessor(),
+        new ImageBlockPostProcessor()
+    );
+
+    // converted document is parsed, rewritten (notice, TOC and image blocks) and serialized only once
+    @Override
+    public String process(Document document, String convertedDocument) {
+        if (ConfluenceConverter.isNative(document))
+            return convertedDocument;
+        final org.jsoup.nodes.Document doc = parse(convertedDocument);
+        rewrite(doc, PROCESSORS);
+        return new StringBuilder()
+            .append("<body>")
+            .append(StringUtils.stripStart(unwrapped(doc), null))
+            .append("</body>")
+            .toString();
+    }
+
+    static org.jsoup.nodes.Document parse(String convertedDocument) {
+        final org.jsoup.nodes.Document doc = Jsoup.parse(convertedDocument);
+
+        org.jsoup.nodes.Document.OutputSettings settings = new org.jsoup.nodes.Document.OutputSettings();
+        settings.prettyPrint(false);
+        settings.syntax(org.jsoup.nodes.Document.OutputSettings.Syntax.xml);
+        doc.outputSettings(settings);
+
+        return doc;
+    }
+
+    static void rewrite(org.jsoup.nodes.Document doc, List<ElementProcessor> processors) {
+        // collect matching elements first, as rewrites modify document tree
+        List<Runnable> rewrites = new ArrayList<>();
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof Element)
+                    processors
+                        .stream()
+                        .filter(p -> p.matches((Element) node))
+                        .findFirst()
+                        .ifPresent(p -> rewrites.add(() -> p.process((Element) node)));
+            }
+            @Override
+            public void tail(Node node, int depth) {
+            }
+        }, doc.body());
+        rewrites.forEach(Runnable::run);
+    }
+
+    // top-level asciidoctor wrappers (sections etc.) are not needed in confluence page
+    static String unwrapped(org.jsoup.nodes.Document doc) {
+        return doc.body().children().stream().map(Element::html).collect(Collectors.joining("\n"));
+    }
+
+}
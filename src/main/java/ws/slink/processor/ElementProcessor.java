@@ -0,0 +1,15 @@
+package ws.slink.processor;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * DOM rewrite applied to matching elements of converted (xhtml5) document;
+ * rewrites are collected in a single document traversal (see {@link DomBlockPostProcessor})
+ */
+public interface ElementProcessor {
+
+    boolean matches(Element element);
+
+    void process(Element element);
+
+}
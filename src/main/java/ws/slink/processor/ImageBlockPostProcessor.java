@@ -3,46 +3,39 @@ package ws.slink.processor;
 import org.apache.commons.lang.StringUtils;
 import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Postprocessor;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
 
-public class ImageBlockPostProcessor extends Postprocessor {
+import java.util.Collections;
+
+public class ImageBlockPostProcessor extends Postprocessor implements ElementProcessor {
 
     @Override
     public String process(Document document, String convertedDocument) {
-        final org.jsoup.nodes.Document doc = Jsoup.parse(convertedDocument);
+        final org.jsoup.nodes.Document doc = DomBlockPostProcessor.parse(convertedDocument);
+        DomBlockPostProcessor.rewrite(doc, Collections.singletonList(this));
+        return doc.body().toString();
+    }
 
-        org.jsoup.nodes.Document.OutputSettings settings = new org.jsoup.nodes.Document.OutputSettings();
-        settings.prettyPrint(false);
-        settings.syntax(org.jsoup.nodes.Document.OutputSettings.Syntax.xml);
-        doc.outputSettings(settings);
+    @Override
+    public boolean matches(Element element) {
+        return "div".equals(element.tagName()) && element.hasClass("imageblock");
+    }
 
-        // process center-aligned images
-        doc.select("div.imageblock.text-center").stream().forEach(element -> {
-//            System.err.println(element.toString());
+    @Override
+    public void process(Element element) {
+        if (element.hasClass("text-center")) {
+            // process center-aligned images
             updateImage(element, "image-center");
             element.removeClass("text-center");
-        });
-
-        // process right-aligned images
-        doc.select("div.imageblock.text-right").stream().forEach(element -> {
+        } else if (element.hasClass("text-right")) {
+            // process right-aligned images
             updateImage(element, "image-right");
             element.removeClass("text-right");
-        });
-
-        // process left-aligned images
-        doc.select("div.imageblock.text-left").stream().forEach(element -> {
-            updateImage(element, "");
-            element.removeClass("text-left");
-        });
-
-        // process non-aligned images
-        doc.select("div.imageblock").stream().forEach(element -> {
+        } else {
+            // process left-aligned and non-aligned images
             updateImage(element, "");
             element.removeClass("text-left");
-        });
-
-        return doc.body().toString();
+        }
     }
 
     private void updateImage(Element element, String alignment) {
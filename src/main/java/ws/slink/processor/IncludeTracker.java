@@ -0,0 +1,68 @@
+package ws.slink.processor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * collects files included by document being converted on current thread (see {@link LocalIncludeProcessor});
+ *
+ * document is converted on a single thread, so tracker is started before conversion and stopped after it
+ *
+ */
+public class IncludeTracker {
+
+    private static final ThreadLocal<IncludeTracker> CURRENT = new ThreadLocal<>();
+
+    private final Set<String> includes = new LinkedHashSet<>();
+    private final Map<String, Integer> depths = new HashMap<>();
+    private boolean complete = true;
+
+    public static IncludeTracker start() {
+        IncludeTracker tracker = new IncludeTracker();
+        CURRENT.set(tracker);
+        return tracker;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    static Optional<IncludeTracker> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * @return canonical paths of all the (directly and indirectly) included files
+     */
+    public Set<String> includes() {
+        return Collections.unmodifiableSet(includes);
+    }
+
+    /**
+     * @return false if some includes could not be tracked (e.g. URI includes)
+     */
+    public boolean complete() {
+        return complete;
+    }
+
+    void add(String path) {
+        includes.add(path);
+    }
+
+    void incomplete() {
+        complete = false;
+    }
+
+    // include depth of file (0 for document itself)
+    int depth(String path) {
+        return null == path ? 0 : depths.getOrDefault(path, 0);
+    }
+
+    void depth(String path, int depth) {
+        depths.put(path, depth);
+    }
+}
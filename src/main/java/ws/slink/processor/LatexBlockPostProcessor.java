@@ -3,22 +3,28 @@ package ws.slink.processor;
 import lombok.extern.slf4j.Slf4j;
 import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Postprocessor;
+import ws.slink.tools.LiteralRewriter;
 
-import java.util.regex.Pattern;
-
+/**
+ * replaces latex delimiters with mathjax markers; all the delimiters are replaced in a single scan
+ */
 @Slf4j
 public class LatexBlockPostProcessor extends Postprocessor {
 
+    private static final LiteralRewriter MATHJAX = new LiteralRewriter()
+        .rule("\\" + "[" + "\\" + "l", "<div class=\"math-left\">(mathjax-block(")
+        .rule("\\" + "[" + "\\" + "r", "<div class=\"math-right\">(mathjax-block(")
+        .rule("\\" + "[", "<div>(mathjax-block(")
+        .rule("\\" + "]", ")mathjax-block)</div>")
+        // backslash before block end used to be turned into inline end by subsequent replacement
+        .rule("\\" + "\\" + "]", ")mathjax-inline)mathjax-block)</div>")
+        .rule("\\" + "(", "(mathjax-inline(")
+        .rule("\\" + ")", ")mathjax-inline)")
+    ;
+
     @Override
     public String process(Document document, String convertedDocument) {
-        return convertedDocument
-            .replaceAll(Pattern.quote("\\" + "[" + "\\" + "l"), "<div class=\"math-left\">(mathjax-block(")
-            .replaceAll(Pattern.quote("\\" + "[" + "\\" + "r"), "<div class=\"math-right\">(mathjax-block(")
-            .replaceAll(Pattern.quote("\\" + "["), "<div>(mathjax-block(")
-            .replaceAll(Pattern.quote("\\" + "]"), ")mathjax-block)</div>")
-            .replaceAll(Pattern.quote("\\" + "("), "(mathjax-inline(")
-            .replaceAll(Pattern.quote("\\" + ")"), ")mathjax-inline)")
-        ;
+        return MATHJAX.rewrite(convertedDocument);
     }
 
 
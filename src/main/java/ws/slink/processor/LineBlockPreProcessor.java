@@ -0,0 +1,67 @@
+package ws.slink.processor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.Preprocessor;
+import org.asciidoctor.extension.PreprocessorReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+public class LineBlockPreProcessor extends Preprocessor {
+
+    // order matters: each processor gets line rewritten by previous ones
+    private static final List<LineProcessor> PROCESSORS = Arrays.asList(
+        new CodeBlockPreProcessor(),
+        new ConfluenceLinkMacroPreProcessor(),
+        new TreeMacroPreProcessor(),
+        new ChildrenMacroPreProcessor()
+    );
+
+    // document lines are read, rewritten (code blocks, links, tree and children macros) and restored only once
+    @Override
+    public void process(Document document, PreprocessorReader reader) {
+        rewrite(reader, PROCESSORS);
+    }
+
+    static void rewrite(PreprocessorReader reader, List<LineProcessor> processors) {
+        List<String> lines = reader.readLines();
+        List<String> newLines = null; // copied on first rewritten line
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String newLine = line;
+            for (LineProcessor processor : processors)
+                newLine = processor.process(newLine);
+            if (null == newLines && newLine != line)
+                newLines = new ArrayList<>(lines.subList(0, i));
+            if (null != newLines)
+                newLines.add(newLine);
+        }
+        reader.restoreLines((null == newLines) ? lines : newLines);
+    }
+
+    // case-insensitive (ASCII) match of lower case pattern at given position
+    static boolean matches(String line, int position, String pattern) {
+        if (position < 0 || position + pattern.length() > line.length())
+            return false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = line.charAt(position + i);
+            if (c >= 'A' && c <= 'Z')
+                c = (char) (c + ('a' - 'A'));
+            if (c != pattern.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    // last case-insensitive (ASCII) occurrence of lower case pattern starting at or before given position, -1 if none
+    static int lastIndexOf(String line, String pattern, int from) {
+        for (int i = Math.min(from, line.length() - pattern.length()); i >= 0; i--)
+            if (matches(line, i, pattern))
+                return i;
+        return -1;
+    }
+
+}
@@ -0,0 +1,14 @@
+package ws.slink.processor;
+
+/**
+ * rewrite applied to each line of source document;
+ * all the rewrites are applied in a single pass over document lines (see {@link LineBlockPreProcessor})
+ */
+public interface LineProcessor {
+
+    /**
+     * @return rewritten line or line itself, if it is not changed
+     */
+    String process(String line);
+
+}
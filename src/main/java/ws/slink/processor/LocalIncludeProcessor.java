@@ -0,0 +1,303 @@
+package ws.slink.processor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.IncludeProcessor;
+import org.asciidoctor.extension.PreprocessorReader;
+import ws.slink.service.IncludeCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * reads local file includes while {@link IncludeTracker} is active, recording every included file,
+ * so that documents depending on a changed file can be found (see {@link ws.slink.service.DependencyGraph});
+ *
+ * include semantics follow asciidoctor's own include directive processing: target is resolved relative to
+ * the including file, 'lines', 'tag' and 'tags' attributes select included lines, 'leveloffset' and 'indent'
+ * are applied by reader, include depth is limited by 'max-include-depth' document attribute; URI includes are
+ * left to asciidoctor (and make tracked includes incomplete);
+ *
+ * included files contents are taken from {@link IncludeCache} shared by all the asciidoctor instances;
+ *
+ * include tracking can be disabled (see a2c.include-tracking), all the includes are left to asciidoctor then
+ * (as URI includes are)
+ *
+ */
+@Slf4j
+public class LocalIncludeProcessor extends IncludeProcessor {
+
+    private static final Pattern URI = Pattern.compile("^[a-zA-Z][a-zA-Z0-9.+-]+:/{0,2}");
+    private static final Pattern TAG_DIRECTIVE = Pattern.compile("\\b(?:tag|(e)nd)::(\\S+?)\\[\\](?=$|[ \\r])");
+    private static final int DEFAULT_MAX_DEPTH = 64;
+    private static final long OPEN_END = Long.MAX_VALUE;
+
+    private final IncludeCache includeCache;
+    private final boolean enabled;
+
+    public LocalIncludeProcessor(IncludeCache includeCache, boolean enabled) {
+        this.includeCache = includeCache;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean handles(String target) {
+        if (!IncludeTracker.current().isPresent())
+            return false;
+        if (!enabled || (target.indexOf(':') >= 0 && URI.matcher(target).find())) {
+            IncludeTracker.current().ifPresent(IncludeTracker::incomplete);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void process(Document document, PreprocessorReader reader, String target, Map<String, Object> attributes) {
+        IncludeTracker tracker = IncludeTracker.current().orElseThrow(IllegalStateException::new);
+
+        File file = new File(target).isAbsolute()
+            ? new File(target)
+            : new File(StringUtils.defaultIfEmpty(reader.getDir(), "."), target);
+        String path = file.getAbsoluteFile().toPath().normalize().toString();
+        tracker.add(path);
+
+        int depth = tracker.depth(reader.getFile()) + 1;
+        if (depth > maxDepth(document)) {
+            // directive is kept in document (escaped, so that it's not processed again)
+            log.error("maximum include depth of {} exceeded: {}", maxDepth(document), path);
+            reader.push_include("\\include::" + target + "[]", null, null, reader.getLineNumber(), new HashMap<>());
+            return;
+        }
+
+        if (!new File(path).isFile()) {
+            if (attributes.containsKey("optional-option")) {
+                log.trace("optional include dropped because include file not found: {}", path);
+            } else {
+                log.warn("include file not found: {}", path);
+                reader.push_include(
+                    "Unresolved directive in " + FilenameUtils.getName(StringUtils.defaultString(reader.getFile(), "<stdin>"))
+                        + " - include::" + target + "[]",
+                    null, null, reader.getLineNumber(), new HashMap<>());
+            }
+            return;
+        }
+
+        String content;
+        try {
+            content = includeCache.read(path);
+        } catch (IOException e) {
+            log.error("include file not readable: {}", path);
+            return;
+        }
+        tracker.depth(path, depth);
+
+        String relativePath = relativePath(document, path);
+        Map<String, Object> includeAttributes = new HashMap<>(attributes);
+        if (attributes.containsKey("lines")) {
+            List<Long> lines = lineNumbers(String.valueOf(attributes.get("lines")));
+            if (!lines.isEmpty()) {
+                includeAttributes.put("partial-option", "");
+                selectLines(content, lines, path, relativePath, includeAttributes, reader);
+                return;
+            }
+        } else if (attributes.containsKey("tag") || attributes.containsKey("tags")) {
+            Map<String, Boolean> tags = tags(attributes);
+            if (!tags.isEmpty()) {
+                selectTags(content, tags, path, relativePath, includeAttributes, reader);
+                return;
+            }
+        }
+        reader.push_include(content, path, relativePath, 1, includeAttributes);
+    }
+
+    private void selectLines(String content, List<Long> lines, String path, String relativePath,
+                             Map<String, Object> attributes, PreprocessorReader reader) {
+        LinkedList<Long> remaining = new LinkedList<>(lines);
+        StringBuilder selected = new StringBuilder();
+        long offset = -1, lineno = 0;
+        boolean selectRemaining = false;
+        for (String line : lines(content)) {
+            lineno++;
+            if (selectRemaining || (selectRemaining = remaining.getFirst() == OPEN_END)) {
+                if (offset < 0)
+                    offset = lineno;
+                selected.append(line);
+            } else {
+                if (remaining.getFirst() == lineno) {
+                    if (offset < 0)
+                        offset = lineno;
+                    selected.append(line);
+                    remaining.removeFirst();
+                }
+                if (remaining.isEmpty())
+                    break;
+            }
+        }
+        if (offset > 0)
+            reader.push_include(selected.toString(), path, relativePath, (int) offset, attributes);
+    }
+
+    private void selectTags(String content, Map<String, Boolean> tags, String path, String relativePath,
+                            Map<String, Object> attributes, PreprocessorReader reader) {
+        Boolean select, baseSelect, wildcard;
+        if (tags.containsKey("**")) {
+            if (tags.containsKey("*")) {
+                select = baseSelect = tags.remove("**");
+                wildcard = tags.remove("*");
+            } else {
+                select = baseSelect = wildcard = tags.remove("**");
+            }
+        } else {
+            select = baseSelect = !tags.containsValue(true);
+            wildcard = tags.remove("*");
+        }
+
+        StringBuilder selected = new StringBuilder();
+        LinkedList<Object[]> tagStack = new LinkedList<>(); // [tag, select, line number]
+        Set<String> tagsUsed = new TreeSet<>();
+        String activeTag = null;
+        long offset = -1, lineno = 0;
+        for (String line : lines(content)) {
+            lineno++;
+            Matcher matcher = (line.contains("::") && line.contains("[]"))
+                ? TAG_DIRECTIVE.matcher(StringUtils.removeEnd(line, "\n"))
+                : null;
+            if (null != matcher && matcher.find()) {
+                String thisTag = matcher.group(2);
+                if (null != matcher.group(1)) {
+                    // end tag
+                    if (thisTag.equals(activeTag)) {
+                        tagStack.removeLast();
+                        activeTag = tagStack.isEmpty() ? null : (String) tagStack.getLast()[0];
+                        select = tagStack.isEmpty() ? baseSelect : (Boolean) tagStack.getLast()[1];
+                    } else if (tags.containsKey(thisTag)) {
+                        if (tagStack.removeIf(entry -> thisTag.equals(entry[0])))
+                            log.warn("mismatched end tag (expected '{}' but found '{}') at line {} of include file: {}", activeTag, thisTag, lineno, path);
+                        else
+                            log.warn("unexpected end tag '{}' at line {} of include file: {}", thisTag, lineno, path);
+                    }
+                } else if (tags.containsKey(thisTag)) {
+                    tagsUsed.add(thisTag);
+                    activeTag = thisTag;
+                    select = tags.get(thisTag);
+                    tagStack.add(new Object[] {activeTag, select, lineno});
+                } else if (null != wildcard) {
+                    select = (null != activeTag && !select) ? false : wildcard;
+                    activeTag = thisTag;
+                    tagStack.add(new Object[] {activeTag, select, lineno});
+                }
+            } else if (select) {
+                if (offset < 0)
+                    offset = lineno;
+                selected.append(line);
+            }
+        }
+        tagStack.forEach(entry ->
+            log.warn("detected unclosed tag '{}' starting at line {} of include file: {}", entry[0], entry[2], path));
+        Set<String> missingTags = new TreeSet<>(tags.keySet());
+        missingTags.removeAll(tagsUsed);
+        if (!missingTags.isEmpty())
+            log.warn("tag(s) '{}' not found in include file: {}", String.join(", ", missingTags), path);
+
+        if (offset > 0) {
+            if (!(baseSelect && Boolean.TRUE.equals(wildcard) && tags.isEmpty()))
+                attributes.put("partial-option", "");
+            reader.push_include(selected.toString(), path, relativePath, (int) offset, attributes);
+        }
+    }
+
+    // sorted unique line numbers, OPEN_END for open range
+    private List<Long> lineNumbers(String value) {
+        Set<Long> lines = new TreeSet<>();
+        for (String lineDef : split(value)) {
+            int range = lineDef.indexOf("..");
+            if (range >= 0) {
+                long from = toLong(lineDef.substring(0, range));
+                String toStr = lineDef.substring(range + 2);
+                long to = toLong(toStr);
+                if (toStr.isEmpty() || to < 0) {
+                    lines.add(from);
+                    lines.add(OPEN_END);
+                } else {
+                    for (long i = from; i <= to; i++)
+                        lines.add(i);
+                }
+            } else {
+                lines.add(toLong(lineDef));
+            }
+        }
+        return new ArrayList<>(lines);
+    }
+
+    private Map<String, Boolean> tags(Map<String, Object> attributes) {
+        Map<String, Boolean> tags = new LinkedHashMap<>();
+        if (attributes.containsKey("tag")) {
+            String tag = String.valueOf(attributes.get("tag"));
+            if (!tag.isEmpty() && !"!".equals(tag))
+                tags.put(StringUtils.removeStart(tag, "!"), !tag.startsWith("!"));
+        } else {
+            for (String tagDef : split(String.valueOf(attributes.get("tags"))))
+                if (!tagDef.isEmpty() && !"!".equals(tagDef))
+                    tags.put(StringUtils.removeStart(tagDef, "!"), !tagDef.startsWith("!"));
+        }
+        return tags;
+    }
+
+    // lines with line terminators kept
+    private List<String> lines(String content) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int end = content.indexOf('\n'); end >= 0; end = content.indexOf('\n', start)) {
+            lines.add(content.substring(start, end + 1));
+            start = end + 1;
+        }
+        if (start < content.length())
+            lines.add(content.substring(start));
+        return lines;
+    }
+
+    private String [] split(String value) {
+        return value.contains(",") ? value.split(",") : value.split(";");
+    }
+
+    // ruby's String#to_i: leading integer, 0 if none
+    private long toLong(String value) {
+        Matcher matcher = Pattern.compile("^\\s*[-+]?\\d+").matcher(value);
+        return matcher.find() ? Long.parseLong(matcher.group().trim().replace("+", "")) : 0;
+    }
+
+    private int maxDepth(Document document) {
+        Object value = document.getAttribute("max-include-depth");
+        if (null == value)
+            return DEFAULT_MAX_DEPTH;
+        long depth = toLong(String.valueOf(value));
+        return depth > 0 ? (int) depth : DEFAULT_MAX_DEPTH;
+    }
+
+    private String relativePath(Document document, String path) {
+        Object docdir = document.getAttribute("docdir");
+        if (null == docdir || StringUtils.isBlank(docdir.toString()))
+            return FilenameUtils.getName(path);
+        try {
+            Path base = Paths.get(docdir.toString()).toAbsolutePath().normalize();
+            return base.relativize(Paths.get(path)).toString();
+        } catch (IllegalArgumentException e) {
+            return path;
+        }
+    }
+
+}
@@ -4,12 +4,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Postprocessor;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
 
 @Slf4j
-public class NoticeBlockPostProcessor extends Postprocessor {
+public class NoticeBlockPostProcessor extends Postprocessor implements ElementProcessor {
 
     // https://confluence.atlassian.com/display/CONF55/Note+Macro
     // https://confluence.atlassian.com/display/CONF55/Info+Macro
@@ -18,41 +20,35 @@ public class NoticeBlockPostProcessor extends Postprocessor {
 
     @Override
     public String process(Document document, String convertedDocument) {
-        final org.jsoup.nodes.Document doc = Jsoup.parse(convertedDocument);
-
-        org.jsoup.nodes.Document.OutputSettings settings = new org.jsoup.nodes.Document.OutputSettings();
-        settings.prettyPrint(false);
-        settings.syntax(org.jsoup.nodes.Document.OutputSettings.Syntax.xml);
-        doc.outputSettings(settings);
+        final org.jsoup.nodes.Document doc = DomBlockPostProcessor.parse(convertedDocument);
+        DomBlockPostProcessor.rewrite(doc, Collections.singletonList(this));
+        return doc.body().toString();
+    }
 
-        doc.select("div.admonitionblock").stream().forEach(element -> {
-            String noticeType = element.className().replace("admonitionblock", "").trim();
-            Element content = element.selectFirst("td.content");
-            org.jsoup.nodes.Document newElement = Jsoup.parse(admonitionBlock(noticeType, content.html()), "", Parser.xmlParser());
-            element.replaceWith(newElement.child(0));
-        });
+    @Override
+    public boolean matches(Element element) {
+        return "div".equals(element.tagName()) && element.hasClass("admonitionblock");
+    }
 
-        return doc.body().toString();
+    @Override
+    public void process(Element element) {
+        String noticeType = element.className().replace("admonitionblock", "").trim();
+        Element content = element.selectFirst("td.content");
+        element.replaceWith(admonitionBlock(noticeType, content));
     }
 
-    private String admonitionBlock(String noticeType, String content) {
+    private Element admonitionBlock(String noticeType, Element content) {
         String confluenceNoticeType = getConfluenceNoticeType(noticeType);
-        return new StringBuilder()
-            .append("<ac:structured-macro ac:name=\"")
-            .append(confluenceNoticeType)
-            .append("\">")
-                .append("<ac:parameter ac:name=\"icon\">false</ac:parameter>")
-                .append("<ac:parameter ac:name=\"title\">")
-                    .append(StringUtils.capitalize(confluenceNoticeType))
-                .append("</ac:parameter>")
-                .append("<ac:rich-text-body>")
-                    .append(content)
-                .append("</ac:rich-text-body>")
-            .append("</ac:structured-macro>")
-            .toString();
+        Element macro = new Element("ac:structured-macro").attr("ac:name", confluenceNoticeType);
+        macro.appendElement("ac:parameter").attr("ac:name", "icon").appendText("false");
+        macro.appendElement("ac:parameter").attr("ac:name", "title").appendText(StringUtils.capitalize(confluenceNoticeType));
+        // content nodes are moved to macro body as is, without being serialized and parsed again
+        macro.appendElement("ac:rich-text-body").insertChildren(0,
+            Optional.ofNullable(content).map(c -> new ArrayList<>(c.childNodes())).orElseGet(ArrayList::new));
+        return macro;
     }
 
-    private String getConfluenceNoticeType(String noticeType) {
+    static String getConfluenceNoticeType(String noticeType) {
         switch(noticeType.toLowerCase()) {
             case "warning"  : return "warning";
             case "important": return "note";
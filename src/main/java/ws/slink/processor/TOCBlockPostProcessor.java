@@ -3,49 +3,46 @@ package ws.slink.processor;
 import lombok.extern.slf4j.Slf4j;
 import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Postprocessor;
-import org.jsoup.Jsoup;
-import org.jsoup.parser.Parser;
+import org.jsoup.nodes.Element;
 
-import java.util.Optional;
+import java.util.Collections;
 
 @Slf4j
-public class TOCBlockPostProcessor extends Postprocessor {
+public class TOCBlockPostProcessor extends Postprocessor implements ElementProcessor {
 
     // https://confluence.atlassian.com/display/CONF55/Table+of+Contents+Macro
 
     @Override
     public String process(Document document, String convertedDocument) {
-        final org.jsoup.nodes.Document doc = Jsoup.parse(convertedDocument);
-
-        org.jsoup.nodes.Document.OutputSettings settings = new org.jsoup.nodes.Document.OutputSettings();
-        settings.prettyPrint(false);
-        settings.syntax(org.jsoup.nodes.Document.OutputSettings.Syntax.xml);
-        doc.outputSettings(settings);
+        final org.jsoup.nodes.Document doc = DomBlockPostProcessor.parse(convertedDocument);
+        DomBlockPostProcessor.rewrite(doc, Collections.singletonList(this));
+        return DomBlockPostProcessor.unwrapped(doc);
+    }
 
-        Optional.ofNullable(doc.selectFirst("div#toc")).ifPresent(tocElement -> {
-            tocElement.replaceWith(Jsoup.parse(tableOfContentsMacro(), "", Parser.xmlParser()).child(0));
-        });
+    @Override
+    public boolean matches(Element element) {
+        return "div".equals(element.tagName()) && "toc".equals(element.id());
+    }
 
-        return doc.body().children().html();
+    @Override
+    public void process(Element element) {
+        element.replaceWith(tableOfContentsMacro());
     }
 
-    private String tableOfContentsMacro() {
-        return new StringBuilder()
-            .append("<div>")
-            .append("<ac:structured-macro ac:name=\"toc\">")
-            .append("<ac:parameter ac:name=\"printable\">true</ac:parameter>")
-            .append("<ac:parameter ac:name=\"style\">circle</ac:parameter>")
-            .append("<ac:parameter ac:name=\"indent\">1em</ac:parameter>")
-            .append("<ac:parameter ac:name=\"maxLevel\">3</ac:parameter>")
-            .append("<ac:parameter ac:name=\"minLevel\">2</ac:parameter>")
-            .append("<ac:parameter ac:name=\"class\">bigpink</ac:parameter>")
-            .append("<ac:parameter ac:name=\"type\">list</ac:parameter>")
-            .append("<ac:parameter ac:name=\"outline\">false</ac:parameter>")
-//            .append("<ac:parameter ac:name=\"exclude\">[1//2]</ac:parameter>")
-//            .append("<ac:parameter ac:name=\"include\">.*</ac:parameter>")
-            .append("</ac:structured-macro>")
-            .append("</div>")
-            .toString();
+    private Element tableOfContentsMacro() {
+        Element div = new Element("div");
+        Element macro = div.appendElement("ac:structured-macro").attr("ac:name", "toc");
+        macro.appendElement("ac:parameter").attr("ac:name", "printable").appendText("true");
+        macro.appendElement("ac:parameter").attr("ac:name", "style").appendText("circle");
+        macro.appendElement("ac:parameter").attr("ac:name", "indent").appendText("1em");
+        macro.appendElement("ac:parameter").attr("ac:name", "maxLevel").appendText("3");
+        macro.appendElement("ac:parameter").attr("ac:name", "minLevel").appendText("2");
+        macro.appendElement("ac:parameter").attr("ac:name", "class").appendText("bigpink");
+        macro.appendElement("ac:parameter").attr("ac:name", "type").appendText("list");
+        macro.appendElement("ac:parameter").attr("ac:name", "outline").appendText("false");
+//        macro.appendElement("ac:parameter").attr("ac:name", "exclude").appendText("[1//2]");
+//        macro.appendElement("ac:parameter").attr("ac:name", "include").appendText(".*");
+        return div;
     }
 
 }
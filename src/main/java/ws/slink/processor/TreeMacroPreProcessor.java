@@ -4,29 +4,29 @@ import org.asciidoctor.ast.Document;
 import org.asciidoctor.extension.Preprocessor;
 import org.asciidoctor.extension.PreprocessorReader;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
 
-public class TreeMacroPreProcessor extends Preprocessor {
+/**
+ * uncomments "// ... pagetree::" lines: everything before last "pagetree::" is removed
+ */
+public class TreeMacroPreProcessor extends Preprocessor implements LineProcessor {
 
-    private static final String TREE_MACRO = "^(//)(.*)(pagetree::)(.*)";
-    private static final Pattern TREE_PATTERN = Pattern.compile(TREE_MACRO, Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final String COMMENT = "//";
+    private static final String TREE_MACRO = "pagetree::";
 
     @Override
     public void process (Document document, PreprocessorReader reader) {
-        List<String> lines = reader.readLines();
-        List<String> newLines = new ArrayList<>();
-        lines.stream().forEach(line -> {
-            Matcher m = TREE_PATTERN.matcher(line);
-            if (m.matches()) {
-                newLines.add(line.replace(m.group(1)+m.group(2), ""));
-            } else {
-                newLines.add(line);
-            }
-        });
-        reader.restoreLines(newLines);
+        LineBlockPreProcessor.rewrite(reader, Collections.singletonList(this));
+    }
+
+    @Override
+    public String process(String line) {
+        if (!line.startsWith(COMMENT))
+            return line;
+        int macro = LineBlockPreProcessor.lastIndexOf(line, TREE_MACRO, line.length());
+        if (macro < COMMENT.length())
+            return line;
+        return line.replace(line.substring(0, macro), "");
     }
 
 }
@@ -0,0 +1,230 @@
+package ws.slink.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import ws.slink.config.AppConfig;
+import ws.slink.model.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * on-disk content-addressed cache of converted documents (final storage format, after all the postprocessors);
+ *
+ * cache key is a hash of document source, all the (recursively) included files, target space, conversion backend
+ * and extensions fingerprint (hash of extension classes), so any change of inputs or of the tool itself leads to a
+ * cache miss; included files are the ones actually included during conversion (see {@link DependencyGraph}), so
+ * documents with includes, which could not be tracked (URI includes), are not cached;
+ *
+ * entries are written to temporary files and atomically moved in place, so cache directory can be shared between
+ * concurrent processes (and CI agents on a shared filesystem); entry modification time is used as access time for
+ * size-bounded LRU eviction, which is performed after each run
+ *
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ConversionCache {
+
+    private static final String CACHE_DIR = "conversions";
+    private static final String [] EXTENSION_CLASSES = {
+        "classpath*:ws/slink/processor/**/*.class",
+        "classpath*:ws/slink/tools/**/*.class"
+    };
+    private static final long STALE_TEMP_FILE_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private final AppConfig appConfig;
+    private final DependencyGraph dependencyGraph;
+
+    @Value("${asciidoc.code.language.default}")
+    private String defaultCodeLanguage;
+
+    private volatile String fingerprint;
+    private final AtomicInteger hits = new AtomicInteger(0);
+    private final AtomicInteger misses = new AtomicInteger(0);
+
+    /**
+     * looks up cached conversion of document; included files are taken from document's last conversion
+     * (see {@link DependencyGraph}), so that any change of included files leads to a cache miss
+     */
+    public Optional<String> get(Document document) {
+        if (!appConfig.isConversionCache())
+            return Optional.empty();
+        Optional<Set<String>> includes = dependencyGraph.includes(document.inputFilename());
+        if (!includes.isPresent()) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        File file = file(key(document, includes.get()));
+        if (!file.isFile()) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        try {
+            String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            if (!file.setLastModified(System.currentTimeMillis()))
+                log.trace("could not update access time of {}", file);
+            hits.incrementAndGet();
+            return Optional.of(content);
+        } catch (IOException e) {
+            // entry could be evicted by other process
+            log.trace("error reading cache entry {}: {}", file, e.getMessage());
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * stores conversion of document, which included given files
+     */
+    public void put(Document document, Collection<String> includes, String content) {
+        if (!appConfig.isConversionCache())
+            return;
+        String key = key(document, includes);
+        File file = file(key);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Path temp = Files.createTempFile(file.getParentFile().toPath(), key, ".tmp");
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("error writing conversion cache entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * removes least recently used entries until cache size fits configured limit
+     */
+    public void evict() {
+        if (!appConfig.isConversionCache())
+            return;
+        if (hits.get() + misses.get() > 0)
+            log.info("conversion cache: {} hit(s), {} miss(es)", hits.getAndSet(0), misses.getAndSet(0));
+        File root = new File(appConfig.getCacheDir(), CACHE_DIR);
+        if (!root.isDirectory())
+            return;
+        List<File> files;
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            files = paths
+                .map(Path::toFile)
+                .filter(File::isFile)
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("error listing conversion cache {}: {}", root, e.getMessage());
+            return;
+        }
+
+        // temporary files are left by interrupted writers only
+        long now = System.currentTimeMillis();
+        files.stream()
+            .filter(f -> f.getName().endsWith(".tmp"))
+            .filter(f -> now - f.lastModified() > STALE_TEMP_FILE_AGE)
+            .forEach(File::delete);
+        files = files.stream()
+            .filter(f -> !f.getName().endsWith(".tmp"))
+            .sorted(Comparator.comparingLong(File::lastModified).reversed())
+            .collect(Collectors.toList());
+
+        long limit = appConfig.getConversionCacheSize() * 1024L * 1024L;
+        long size = 0;
+        int removed = 0;
+        for (File file : files) {
+            size += file.length();
+            if (size > limit && file.delete())
+                removed++;
+        }
+        if (removed > 0)
+            log.debug("removed {} conversion cache entries", removed);
+    }
+
+    private String key(Document document, Collection<String> includes) {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        update(digest, fingerprint());
+        update(digest, appConfig.getBackend());
+        update(digest, document.space());
+        update(digest, new File(document.inputFilename()).getAbsolutePath());
+        update(digest, document.contents());
+        for (String include : includes) {
+            update(digest, include);
+            try {
+                // included files are read from disk, cached contents could be stale (e.g. file modified within
+                // modification time resolution and keeping its size)
+                update(digest, FileUtils.readFileToString(new File(include), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                update(digest, "missing");
+            }
+        }
+        return new String(Hex.encodeHex(digest.digest()));
+    }
+
+    private String fingerprint() {
+        if (null == fingerprint) {
+            synchronized (this) {
+                if (null == fingerprint) {
+                    MessageDigest digest = DigestUtils.getSha256Digest();
+                    update(digest, StringUtils.defaultString(getClass().getPackage().getImplementationVersion()));
+                    update(digest, defaultCodeLanguage);
+                    PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(getClass().getClassLoader());
+                    try {
+                        for (String pattern : EXTENSION_CLASSES) {
+                            Resource [] resources = resolver.getResources(pattern);
+                            Arrays.sort(resources, Comparator.comparing(Resource::getDescription));
+                            for (Resource resource : resources)
+                                try (InputStream input = resource.getInputStream()) {
+                                    digest.update(IOUtils.toByteArray(input));
+                                }
+                        }
+                    } catch (IOException e) {
+                        log.warn("error reading extension classes: {}", e.getMessage());
+                    }
+                    fingerprint = new String(Hex.encodeHex(digest.digest()));
+                    log.trace("extensions fingerprint: {}", fingerprint);
+                }
+            }
+        }
+        return fingerprint;
+    }
+
+    private void update(MessageDigest digest, String value) {
+        byte [] bytes = StringUtils.defaultString(value).getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private File file(String key) {
+        return new File(new File(new File(appConfig.getCacheDir(), CACHE_DIR), key.substring(0, 2)), key);
+    }
+
+}
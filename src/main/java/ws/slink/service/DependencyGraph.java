@@ -0,0 +1,150 @@
+package ws.slink.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.json.simple.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ws.slink.config.AppConfig;
+import ws.slink.tools.FluentJson;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * persistent include-dependency graph: files (directly and indirectly) included by each document during its
+ * last conversion (see {@link ws.slink.processor.LocalIncludeProcessor});
+ *
+ * graph is kept in cache directory (see a2c.cache-dir) and is used to find documents affected by changed
+ * included files (reverse dependencies), as well as to build conversion cache keys; all the paths are absolute
+ *
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class DependencyGraph {
+
+    private static final String GRAPH_FILE = "dependencies.json";
+
+    private final AppConfig appConfig;
+
+    private final Map<String, Set<String>> includes = new ConcurrentHashMap<>();
+    private final AtomicBoolean modified = new AtomicBoolean(false);
+    private volatile boolean loaded = false;
+
+    /**
+     * @return files included by document during its last conversion, empty if document was not converted yet
+     */
+    public Optional<Set<String>> includes(String inputFilename) {
+        ensureLoaded();
+        return Optional.ofNullable(includes.get(path(inputFilename))).map(Collections::unmodifiableSet);
+    }
+
+    public void update(String inputFilename, Collection<String> included) {
+        ensureLoaded();
+        Set<String> value = new LinkedHashSet<>(included);
+        if (!value.equals(includes.put(path(inputFilename), value)))
+            modified.set(true);
+    }
+
+    public void remove(String inputFilename) {
+        ensureLoaded();
+        if (null != includes.remove(path(inputFilename)))
+            modified.set(true);
+    }
+
+    /**
+     * @return existing documents including any of given files
+     */
+    public Set<String> dependents(Collection<String> files) {
+        ensureLoaded();
+        Set<String> paths = files.stream().map(this::path).collect(Collectors.toSet());
+        return includes.entrySet()
+            .stream()
+            .filter(e -> e.getValue().stream().anyMatch(paths::contains))
+            .map(Map.Entry::getKey)
+            .filter(d -> new File(d).isFile())
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * writes graph (if modified) to temporary file, which then replaces graph file
+     */
+    public synchronized void save() {
+        if (!modified.getAndSet(false))
+            return;
+        File file = file();
+        List<Object> list = new ArrayList<>();
+        includes.forEach((document, included) -> list.add(new FluentJson()
+            .set("path", document)
+            .set("includes", new ArrayList<>(included))
+            .get()));
+        try {
+            Files.createDirectories(file.toPath().getParent());
+            Path temp = Files.createTempFile(file.toPath().getParent(), GRAPH_FILE, ".tmp");
+            Files.write(temp, new FluentJson().set("documents", list).toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("saved include dependencies of {} document(s) to {}", list.size(), file);
+        } catch (IOException e) {
+            modified.set(true);
+            log.warn("error saving include dependencies {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    private void load() {
+        File file = file();
+        if (!file.exists())
+            return;
+        try {
+            FluentJson json = new FluentJson(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            Optional.ofNullable(json.get("documents")).ifPresent(list -> list.stream().forEach(e -> {
+                Object document = ((JSONObject) e.get()).get("path");
+                Set<String> included = new LinkedHashSet<>();
+                Optional.ofNullable(e.get("includes")).ifPresent(i -> i.forEach(v -> included.add(v.toString())));
+                if (null != document)
+                    includes.put(document.toString(), included);
+            }));
+            log.debug("loaded include dependencies of {} document(s) from {}", includes.size(), file);
+        } catch (Exception e) {
+            log.warn("error loading include dependencies {}: {}", file, e.getMessage());
+            if (log.isTraceEnabled())
+                e.printStackTrace();
+        }
+    }
+
+    private File file() {
+        return new File(appConfig.getCacheDir(), GRAPH_FILE);
+    }
+
+    private String path(String inputFilename) {
+        return Paths.get(inputFilename).toAbsolutePath().normalize().toString();
+    }
+
+}
@@ -0,0 +1,168 @@
+package ws.slink.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.stereotype.Service;
+import ws.slink.model.ChangeSet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * queries git repository containing documentation sources with 'git' command-line client;
+ *
+ * changes are taken from git object database (committed changes only); documents are reported for the
+ * directory being processed only, while changed files are reported for the whole repository, as documents
+ * could include files from outside of their directory (e.g. shared partials)
+ *
+ */
+@Slf4j
+@Service
+public class GitService {
+
+    /**
+     * @return commit id of repository HEAD, if directory belongs to git repository
+     */
+    public Optional<String> head(String dir) {
+        return git(dir, "rev-parse", "--verify", "HEAD").map(String::trim);
+    }
+
+    /**
+     * lists documents (*.adoc, *.asciidoc) changed in directory and all the files changed in repository
+     * between given revisions
+     */
+    public Optional<ChangeSet> changes(String dir, String since, String until) {
+        // path of repository top-level directory relative to given one (empty for top-level directory itself)
+        Optional<String> topLevel = git(dir, "rev-parse", "--show-cdup").map(String::trim);
+        if (!topLevel.isPresent())
+            return Optional.empty();
+        return git(dir, "diff", "--name-status", "-z", "-M", since, until)
+            .map(output -> parse(dir, topLevel.get(), output));
+    }
+
+    /**
+     * reads contents of file (given by path relative to directory) at given revision with given reader;
+     * reader could stop reading at any point, rest of the file is not read then
+     *
+     * @return reader result
+     */
+    public <T> Optional<T> show(String dir, String revision, String path, Function<BufferedReader, Optional<T>> reader) {
+        return git(dir, reader::apply, "show", revision + ":./" + path.replace('\\', '/'));
+    }
+
+    // paths in git output are relative to repository top-level directory
+    private ChangeSet parse(String dir, String topLevel, String output) {
+        Path base = Paths.get(dir).toAbsolutePath().normalize();
+        Path top = base.resolve(topLevel).normalize();
+        ChangeSet changeSet = new ChangeSet();
+        List<String> tokens = Arrays.asList(output.split("\0"));
+        for (int i = 0; i < tokens.size(); i++) {
+            String status = tokens.get(i);
+            if (StringUtils.isBlank(status))
+                continue;
+            switch (status.charAt(0)) {
+                case 'R':
+                    String from = tokens.get(++i);
+                    String to = tokens.get(++i);
+                    changeSet.files().add(absolute(top, from));
+                    changeSet.files().add(absolute(top, to));
+                    if (isDocument(base, top, to)) {
+                        changeSet.changed().add(absolute(top, to));
+                        if (isDocument(base, top, from))
+                            changeSet.renamed().put(absolute(top, from), absolute(top, to));
+                    } else if (isDocument(base, top, from))
+                        changeSet.deleted().add(absolute(top, from));
+                    break;
+                case 'C':
+                    i++;
+                    // fall through: copy target is a new document
+                case 'A':
+                case 'M':
+                case 'T':
+                    String path = tokens.get(++i);
+                    changeSet.files().add(absolute(top, path));
+                    if (isDocument(base, top, path))
+                        changeSet.changed().add(absolute(top, path));
+                    break;
+                case 'D':
+                    String deleted = tokens.get(++i);
+                    changeSet.files().add(absolute(top, deleted));
+                    if (isDocument(base, top, deleted))
+                        changeSet.deleted().add(absolute(top, deleted));
+                    break;
+                default:
+                    log.trace("skipping change '{}' of {}", status, tokens.get(++i));
+            }
+        }
+        return changeSet;
+    }
+
+    // document located in processed directory
+    private boolean isDocument(Path base, Path top, String path) {
+        return (path.endsWith(".adoc") || path.endsWith(".asciidoc")) && top.resolve(path).normalize().startsWith(base);
+    }
+
+    private String absolute(Path base, String path) {
+        return base.resolve(path).normalize().toString();
+    }
+
+    private Optional<String> git(String dir, String... args) {
+        return git(dir, reader -> Optional.of(IOUtils.toString(reader)), args);
+    }
+
+    private <T> Optional<T> git(String dir, OutputReader<T> outputReader, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.add("-C");
+        command.add(dir);
+        command.addAll(Arrays.asList(args));
+        File errorFile = null;
+        try {
+            // error output goes to file, so that git does not block on full stderr pipe while stdout is read
+            errorFile = File.createTempFile("a2c-git-", ".err");
+            Process process = new ProcessBuilder(command).redirectError(errorFile).start();
+            process.getOutputStream().close();
+            Optional<T> output;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                output = outputReader.read(reader);
+                if (reader.read() >= 0) {
+                    // rest of output is not needed by reader, so git is stopped
+                    process.destroy();
+                    process.waitFor();
+                    return output;
+                }
+            }
+            if (process.waitFor() != 0) {
+                log.debug("git command {} failed: {}", command, FileUtils.readFileToString(errorFile, StandardCharsets.UTF_8).trim());
+                return Optional.empty();
+            }
+            return output;
+        } catch (IOException e) {
+            log.warn("error running git: {}", e.getMessage());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } finally {
+            FileUtils.deleteQuietly(errorFile);
+        }
+    }
+
+    @FunctionalInterface
+    private interface OutputReader<T> {
+        Optional<T> read(BufferedReader reader) throws IOException;
+    }
+
+}
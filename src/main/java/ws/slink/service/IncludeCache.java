@@ -0,0 +1,115 @@
+package ws.slink.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ws.slink.config.AppConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * run-wide in-memory cache of included files contents (see {@link ws.slink.processor.LocalIncludeProcessor}),
+ * so that partials shared by many documents are read and decoded once;
+ *
+ * entries are keyed by canonical file path and validated by file modification time and size on each lookup,
+ * cache is bounded by total contents size (see a2c.include-cache-size), least recently used entries are evicted
+ * first; cache is shared by all the conversion threads
+ *
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class IncludeCache {
+
+    private final AppConfig appConfig;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicInteger hits = new AtomicInteger(0);
+    private final AtomicInteger misses = new AtomicInteger(0);
+    private long size = 0;
+
+    private static class Entry {
+        private final long modified;
+        private final long length;
+        private final String content;
+        private Entry(long modified, long length, String content) {
+            this.modified = modified;
+            this.length = length;
+            this.content = content;
+        }
+    }
+
+    /**
+     * @return contents of file (UTF-8), taken from cache if file is not modified since it was cached
+     */
+    public String read(String path) throws IOException {
+        File file = new File(path);
+        if (limit() <= 0)
+            return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+
+        String key = file.getCanonicalPath();
+        long modified = file.lastModified();
+        long length = file.length();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (null != entry && entry.modified == modified && entry.length == length) {
+                hits.incrementAndGet();
+                return entry.content;
+            }
+        }
+
+        // file is read outside of lock, so concurrent misses of the same file could read it twice
+        misses.incrementAndGet();
+        String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        put(key, new Entry(modified, length, content));
+        return content;
+    }
+
+    public int hits() {
+        return hits.get();
+    }
+
+    public int misses() {
+        return misses.get();
+    }
+
+    private void put(String key, Entry entry) {
+        long entrySize = size(entry);
+        if (entrySize > limit()) {
+            log.trace("include file {} is too large to be cached", key);
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (null != previous)
+                size -= size(previous);
+            size += entrySize;
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (size > limit() && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                if (eldest.getKey().equals(key))
+                    continue;
+                size -= size(eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    // approximate memory footprint of cached contents (java strings are UTF-16)
+    private long size(Entry entry) {
+        return 2L * entry.content.length();
+    }
+
+    private long limit() {
+        return appConfig.getIncludeCacheSize() * 1024L * 1024L;
+    }
+
+}
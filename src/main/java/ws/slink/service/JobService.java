@@ -0,0 +1,88 @@
+package ws.slink.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import ws.slink.model.Job;
+import ws.slink.model.ProcessingResult;
+import ws.slink.parser.Processor;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ws.slink.model.Job.Status.*;
+
+/**
+ * runs conversion/publishing jobs submitted to resident (daemon mode) process;
+ *
+ * jobs are executed one by one (each job is processed in parallel internally), so that
+ * per-run tracking data (processed documents, duplicate titles) is not mixed between jobs
+ *
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class JobService {
+
+    // maximum number of jobs to keep for status polling
+    private static final int MAX_JOBS = 1000;
+
+    private final Processor processor;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<String, Job>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > MAX_JOBS;
+        }
+    });
+
+    public Job submit(Job job) {
+        log.info("submitted job {}", job);
+        jobs.put(job.id(), job);
+        executor.submit(() -> run(job));
+        return job;
+    }
+
+    public Optional<Job> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public Collection<Job> list() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        job.status(JS_RUNNING).started(Instant.now());
+        try {
+            // other jobs may publish to the same space, so only pages published from job's directories can be stale
+            ProcessingResult result = processor.process(job.dirs(), job.files(), job.space(), true);
+            long started = job.started().toEpochMilli();
+            job.result(result)
+               .report(processor.report(result, started, started, Instant.now().toEpochMilli()))
+               .status(JS_FINISHED);
+            log.info("finished job {}", job);
+        } catch (Exception e) {
+            log.error("error processing job {}: {}", job, e.getMessage());
+            if (log.isTraceEnabled())
+                e.printStackTrace();
+            job.report(e.getMessage()).status(JS_FAILED);
+        } finally {
+            job.finished(Instant.now());
+        }
+    }
+
+}
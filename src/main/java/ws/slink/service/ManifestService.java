@@ -0,0 +1,264 @@
+package ws.slink.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.json.simple.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ws.slink.config.AppConfig;
+import ws.slink.model.ManifestEntry;
+import ws.slink.tools.FluentJson;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * persistent manifest mapping source files to published confluence pages (page id, version, title, content hash);
+ *
+ * manifest is kept in cache directory (see a2c.cache-dir) and lets warm runs find pages by id instead of looking
+ * them up by title; last published git revision of processed directories is kept there as well; entries are keyed by confluence URL, space and absolute source file path; manifest is loaded
+ * on first access, as configuration can be changed with command-line arguments after service creation
+ *
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ManifestService {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+
+    private final AppConfig appConfig;
+
+    private final Map<String, ManifestEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, String> revisions = new ConcurrentHashMap<>();
+    private final AtomicBoolean modified = new AtomicBoolean(false);
+    private volatile boolean loaded = false;
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    private void load() {
+        File file = file();
+        if (!file.exists())
+            return;
+        try {
+            FluentJson json = new FluentJson(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            Optional.ofNullable(json.get("entries")).ifPresent(list -> list.stream().forEach(e -> {
+                ManifestEntry entry = new ManifestEntry()
+                    .url(string(e, "url"))
+                    .space(string(e, "space"))
+                    .path(string(e, "path"))
+                    .pageId(string(e, "pageId"))
+                    .version(e.getInt("version"))
+                    .title(string(e, "title"))
+                    .hash(string(e, "hash"));
+                entries.put(key(entry.url(), entry.space(), entry.path()), entry);
+            }));
+            Optional.ofNullable(json.get("revisions")).ifPresent(list -> list.stream().forEach(e ->
+                revisions.put(key(string(e, "url"), string(e, "space"), string(e, "path")), string(e, "revision"))));
+            log.debug("loaded {} manifest entries from {}", entries.size(), file);
+        } catch (Exception e) {
+            log.warn("error loading manifest {}: {}", file, e.getMessage());
+            if (log.isTraceEnabled())
+                e.printStackTrace();
+        }
+    }
+
+    /**
+     * writes manifest (if modified) to temporary file, which then replaces manifest file
+     */
+    public synchronized void save() {
+        if (!appConfig.isManifest() || !modified.getAndSet(false))
+            return;
+        ensureLoaded();
+        File file = file();
+        List<Object> list = new ArrayList<>();
+        entries.values().forEach(entry -> list.add(new FluentJson()
+            .set("url", entry.url())
+            .set("space", entry.space())
+            .set("path", entry.path())
+            .set("pageId", entry.pageId())
+            .set("version", entry.version())
+            .set("title", entry.title())
+            .set("hash", entry.hash())
+            .get()));
+        List<Object> revisionList = new ArrayList<>();
+        revisions.forEach((key, revision) -> {
+            String [] parts = key.split("\\|", 3);
+            revisionList.add(new FluentJson()
+                .set("url", parts[0])
+                .set("space", parts[1])
+                .set("path", parts[2])
+                .set("revision", revision)
+                .get());
+        });
+        try {
+            Files.createDirectories(file.toPath().getParent());
+            Path temp = Files.createTempFile(file.toPath().getParent(), MANIFEST_FILE, ".tmp");
+            Files.write(temp, new FluentJson().set("entries", list).set("revisions", revisionList).toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("saved {} manifest entries to {}", list.size(), file);
+        } catch (IOException e) {
+            modified.set(true);
+            log.warn("error saving manifest {}: {}", file, e.getMessage());
+        }
+    }
+
+    public Optional<ManifestEntry> get(String space, String inputFilename) {
+        if (!appConfig.isManifest())
+            return Optional.empty();
+        ensureLoaded();
+        return Optional.ofNullable(entries.get(key(appConfig.getUrl(), space, path(inputFilename))));
+    }
+
+    /**
+     * @return page id of already published page with given title
+     */
+    public Optional<String> findPageId(String space, String title) {
+        if (!appConfig.isManifest())
+            return Optional.empty();
+        ensureLoaded();
+        return entries.values()
+            .stream()
+            .filter(e -> Objects.equals(e.url(), appConfig.getUrl()) && Objects.equals(e.space(), space) && Objects.equals(e.title(), title))
+            .map(ManifestEntry::pageId)
+            .findFirst();
+    }
+
+    public void put(String space, String inputFilename, String pageId, int version, String title, String hash) {
+        if (!appConfig.isManifest())
+            return;
+        ensureLoaded();
+        ManifestEntry entry = new ManifestEntry()
+            .url(appConfig.getUrl())
+            .space(space)
+            .path(path(inputFilename))
+            .pageId(pageId)
+            .version(version)
+            .title(title)
+            .hash(hash);
+        entries.put(key(entry.url(), entry.space(), entry.path()), entry);
+        modified.set(true);
+    }
+
+    /**
+     * moves entry of renamed source file
+     */
+    public void move(String space, String fromFilename, String toFilename) {
+        get(space, fromFilename).ifPresent(entry -> {
+            remove(entry);
+            entries.put(key(entry.url(), entry.space(), path(toFilename)), entry.path(path(toFilename)));
+            modified.set(true);
+        });
+    }
+
+    /**
+     * @return last published git revision of directory
+     */
+    public Optional<String> revision(String space, String dir) {
+        if (!appConfig.isManifest())
+            return Optional.empty();
+        ensureLoaded();
+        return Optional.ofNullable(revisions.get(key(appConfig.getUrl(), space, path(dir))));
+    }
+
+    public void revision(String space, String dir, String revision) {
+        if (!appConfig.isManifest())
+            return;
+        ensureLoaded();
+        revisions.put(key(appConfig.getUrl(), space, path(dir)), revision);
+        modified.set(true);
+    }
+
+    public void remove(ManifestEntry entry) {
+        ensureLoaded();
+        if (null != entries.remove(key(entry.url(), entry.space(), entry.path())))
+            modified.set(true);
+    }
+
+    /**
+     * @return entries of files in given directory (recursively)
+     */
+    public List<ManifestEntry> entries(String space, String dir) {
+        if (!appConfig.isManifest())
+            return Collections.emptyList();
+        ensureLoaded();
+        Path path = Paths.get(path(dir));
+        return entries.values()
+            .stream()
+            .filter(e -> Objects.equals(e.url(), appConfig.getUrl()) && Objects.equals(e.space(), space))
+            .filter(e -> Paths.get(e.path()).startsWith(path))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return ids of pages published from files in given directory (recursively)
+     */
+    public Set<String> pageIds(String space, String dir) {
+        return entries(space, dir).stream().map(ManifestEntry::pageId).collect(Collectors.toSet());
+    }
+
+    /**
+     * removes all the entries pointing to (removed) page
+     */
+    public void removePage(String pageId) {
+        ensureLoaded();
+        if (entries.values().removeIf(e -> Objects.equals(e.url(), appConfig.getUrl()) && Objects.equals(e.pageId(), pageId)))
+            modified.set(true);
+    }
+
+    /**
+     * @return hash of published page contents: title, labels and converted document
+     */
+    public static String hash(String title, Collection<String> tags, String content) {
+        return DigestUtils.sha256Hex(new StringBuilder()
+            .append(StringUtils.defaultString(title)).append('\n')
+            .append(tags.stream().map(tag -> tag.replaceAll(" ", "_")).sorted().collect(Collectors.joining(","))).append('\n')
+            .append(StringUtils.defaultString(content))
+            .toString());
+    }
+
+    private File file() {
+        return new File(appConfig.getCacheDir(), MANIFEST_FILE);
+    }
+
+    private String path(String inputFilename) {
+        return Paths.get(inputFilename).toAbsolutePath().normalize().toString();
+    }
+
+    private String key(String url, String space, String path) {
+        return StringUtils.defaultString(url) + "|" + StringUtils.defaultString(space) + "|" + path;
+    }
+
+    private String string(FluentJson json, String key) {
+        Object value = ((JSONObject) json.get()).get(key);
+        return (null == value) ? null : value.toString();
+    }
+
+}
@@ -0,0 +1,88 @@
+package ws.slink.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+import ws.slink.config.AppConfig;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * dedicated bounded executors for document processing stages:
+ *
+ *   convert - CPU-bound asciidoctor conversion (defaults to number of available processors)
+ *   publish - I/O-bound confluence requests (defaults to 4 x number of available processors)
+ *   request - confluence requests (see {@link ws.slink.atlassian.Confluence}), number of threads limits number
+ *             of requests in flight (see a2c.http-max-in-flight, defaults to a2c.http-pool-size)
+ *   retry   - single thread scheduling failed requests to be retried after retry delay
+ *
+ * number of available processors is taken from JVM, which respects container (cgroup) CPU limits
+ *
+ */
+@Slf4j
+@Service
+@DependsOn("commandLineArguments")
+public class ProcessingExecutors {
+
+    // publishing threads mostly wait for confluence server responses
+    private static final int PUBLISH_THREADS_PER_CPU = 4;
+
+    private final ExecutorService convert;
+    private final ExecutorService publish;
+    private final ExecutorService request;
+    private final ScheduledExecutorService retry;
+
+    @Autowired
+    public ProcessingExecutors(AppConfig appConfig) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int convertThreads = (appConfig.getConvertThreads() > 0) ? appConfig.getConvertThreads() : cpus;
+        int publishThreads = (appConfig.getPublishThreads() > 0) ? appConfig.getPublishThreads() : cpus * PUBLISH_THREADS_PER_CPU;
+        int requestThreads = (appConfig.getHttpMaxInFlight() > 0) ? appConfig.getHttpMaxInFlight() : Math.max(1, appConfig.getHttpPoolSize());
+        log.debug("processing executors: {} convert thread(s), {} publish thread(s), {} request thread(s)", convertThreads, publishThreads, requestThreads);
+        this.convert = Executors.newFixedThreadPool(convertThreads, threadFactory("a2c-convert-"));
+        this.publish = Executors.newFixedThreadPool(publishThreads, threadFactory("a2c-publish-"));
+        // request tasks never wait for other tasks, so publishing tasks can wait for them without deadlock
+        this.request = Executors.newFixedThreadPool(requestThreads, threadFactory("a2c-request-"));
+        this.retry = Executors.newSingleThreadScheduledExecutor(threadFactory("a2c-retry-"));
+    }
+
+    public ExecutorService convert() {
+        return convert;
+    }
+
+    public ExecutorService publish() {
+        return publish;
+    }
+
+    public ExecutorService request() {
+        return request;
+    }
+
+    public ScheduledExecutorService retry() {
+        return retry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        convert.shutdownNow();
+        publish.shutdownNow();
+        request.shutdownNow();
+        retry.shutdownNow();
+    }
+
+    private ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
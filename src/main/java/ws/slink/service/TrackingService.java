@@ -1,8 +1,16 @@
 package ws.slink.service;
 
+import org.apache.commons.lang.StringUtils;
 import org.springframework.stereotype.Service;
+import ws.slink.model.Document;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -10,9 +18,11 @@ import java.util.stream.Collectors;
 public class TrackingService {
 
     private final Map<String, Integer> publishedTitles;
+    private final Map<String, Document> documents;
 
     public TrackingService() {
         publishedTitles = new ConcurrentHashMap<>();
+        documents = new ConcurrentHashMap<>();
     }
 
     public boolean contains(String title) {
@@ -24,8 +34,56 @@ public class TrackingService {
         publishedTitles.compute(title, (a,b) -> b+1);
     }
 
+    /**
+     * clears tracked data before new processing run
+     */
+    public void reset() {
+        publishedTitles.clear();
+        documents.clear();
+    }
+
     public Map<String, Integer> get() {
         return publishedTitles.entrySet().stream().filter(e -> e.getValue() > 1).collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue()));
     }
 
+    /**
+     * keeps track of all the repository documents read during current run (indexed by title),
+     * so that they can be reused later (e.g. for stale articles removal) without being re-read from disk;
+     * first document registered with a title is kept
+     */
+    public void register(Document document) {
+        documents.putIfAbsent(StringUtils.defaultString(document.title()), document);
+    }
+
+    /**
+     * removes registered document read from given file (e.g. when file is changed or deleted in watch mode)
+     *
+     * @return removed document
+     */
+    public Optional<Document> unregister(String inputFilename) {
+        Path path = Paths.get(inputFilename).toAbsolutePath().normalize();
+        Optional<Document> document = documents.values()
+            .stream()
+            .filter(d -> StringUtils.isNotBlank(d.inputFilename()))
+            .filter(d -> Paths.get(d.inputFilename()).toAbsolutePath().normalize().equals(path))
+            .findFirst();
+        document.ifPresent(d -> documents.remove(StringUtils.defaultString(d.title()), d));
+        return document;
+    }
+
+    public Collection<Document> documents() {
+        return Collections.unmodifiableCollection(documents.values());
+    }
+
+    public Optional<Document> document(String title) {
+        return Optional.ofNullable(documents.get(StringUtils.defaultString(title)));
+    }
+
+    /**
+     * @return (live) set of registered document titles
+     */
+    public Set<String> titles() {
+        return Collections.unmodifiableSet(documents.keySet());
+    }
+
 }
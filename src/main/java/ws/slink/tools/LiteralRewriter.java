@@ -0,0 +1,95 @@
+package ws.slink.tools;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ *   replaces multiple literals in a single scan of input string;
+ *
+ *   literals are kept in a trie, at every position the longest matching literal is replaced
+ *   (leftmost-longest semantics); if none of the literals occur in input, input string itself
+ *   is returned and nothing is allocated
+ *
+ *   rewriter should be configured once (with {@link #rule(String, String)}) and can then be
+ *   shared between threads
+ */
+public class LiteralRewriter {
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String replacement;
+
+        private Node child(char c) {
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] == c)
+                    return children[i];
+            return null;
+        }
+        private Node addChild(char c) {
+            Node child = child(c);
+            if (null == child) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+    private final BitSet firstChars = new BitSet();
+
+    public LiteralRewriter rule(String literal, String replacement) {
+        if (null == literal || literal.isEmpty())
+            throw new IllegalArgumentException("literal should not be empty");
+        Node node = root;
+        for (int i = 0; i < literal.length(); i++)
+            node = node.addChild(literal.charAt(i));
+        node.replacement = replacement;
+        firstChars.set(literal.charAt(0));
+        return this;
+    }
+
+    public String rewrite(String input) {
+        StringBuilder output = null;
+        int copied = 0;
+        int length = input.length();
+        for (int position = 0; position < length; ) {
+            int matchEnd = firstChars.get(input.charAt(position)) ? match(input, position) : -1;
+            if (matchEnd < 0) {
+                position++;
+                continue;
+            }
+            if (null == output)
+                output = new StringBuilder(length + 64);
+            output.append(input, copied, position).append(replacement(input, position, matchEnd));
+            position = copied = matchEnd;
+        }
+        return (null == output) ? input : output.append(input, copied, length).toString();
+    }
+
+    // end position of the longest literal starting at given position, -1 if none matches
+    private int match(String input, int position) {
+        int matchEnd = -1;
+        Node node = root;
+        for (int i = position; i < input.length(); i++) {
+            node = node.child(input.charAt(i));
+            if (null == node)
+                break;
+            if (null != node.replacement)
+                matchEnd = i + 1;
+        }
+        return matchEnd;
+    }
+
+    private String replacement(String input, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end; i++)
+            node = node.child(input.charAt(i));
+        return node.replacement;
+    }
+
+}
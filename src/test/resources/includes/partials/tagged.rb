@@ -0,0 +1,23 @@
+# tag::first[]
+def first
+  1
+end
+# end::first[]
+
+# tag::second[]
+def second
+  2
+end
+# end::second[]
+
+# tag::outer[]
+class Outer
+  # tag::inner[]
+  def inner
+    :inner
+  end
+  # end::inner[]
+end
+# end::outer[]
+
+untagged = true